@@ -0,0 +1,83 @@
+package teclan.es.benchmark;
+
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.client.transport.TransportClient;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+
+import teclan.es.AbstractESDaoImpl;
+
+/**
+ * 基准测试使用的 DAO，文档结构接近常见的业务数据
+ *
+ * @author dev
+ *
+ */
+public class BenchmarkDao extends AbstractESDaoImpl {
+	public static final String INDEX = "benchmark";
+	public static final String TYPE = "doc";
+
+	private final TransportClient client;
+
+	public BenchmarkDao(TransportClient client) {
+		this.client = client;
+	}
+
+	@Override
+	public TransportClient getTransportClient() {
+		return client;
+	}
+
+	@Override
+	public String getIndex() {
+		return INDEX;
+	}
+
+	@Override
+	public String getType() {
+		return TYPE;
+	}
+
+	public static JSONObject newDocument(long i) {
+		JSONObject document = new JSONObject();
+		document.put("id", String.valueOf(i));
+		document.put("name", "name-" + i);
+		document.put("category", "category-" + (i % 16));
+		document.put("amount", i % 1000);
+		document.put("createTime", 1500000000000L + i * 1000);
+		document.put("description", "benchmark document " + i + " with some text to make the source realistic");
+		return document;
+	}
+
+	/**
+	 * 批量写入 n 个文档并刷新，_id 与 id 字段相同，从 0 开始
+	 *
+	 * @param n
+	 */
+	public void load(int n) {
+		BulkRequestBuilder builder = client.prepareBulk();
+		for (int i = 0; i < n; i++) {
+			builder.add(client.prepareIndex(INDEX, TYPE, String.valueOf(i)).setSource(newDocument(i)));
+			if (builder.numberOfActions() == 1000 || i == n - 1) {
+				builder.execute().actionGet();
+				builder = client.prepareBulk();
+			}
+		}
+		client.admin().indices().prepareRefresh(INDEX).execute().actionGet();
+	}
+
+	/**
+	 * 生成 n 个新文档
+	 *
+	 * @param n
+	 * @return
+	 */
+	public static JSONArray newDocuments(int n) {
+		JSONArray documents = new JSONArray(n);
+		for (int i = 0; i < n; i++) {
+			documents.add(newDocument(i));
+		}
+		return documents;
+	}
+}
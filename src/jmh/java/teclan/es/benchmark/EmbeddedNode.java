@@ -0,0 +1,79 @@
+package teclan.es.benchmark;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.elasticsearch.action.admin.cluster.node.info.NodesInfoResponse;
+import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.transport.InetSocketTransportAddress;
+import org.elasticsearch.node.Node;
+import org.elasticsearch.node.NodeBuilder;
+
+import teclan.es.TransportClientFactory;
+import teclan.es.utils.FileUtils;
+
+/**
+ * 基准测试使用的本地 ES 节点，数据放在临时目录，关闭时删除
+ *
+ * 节点只监听 127.0.0.1 的 transport 端口，DAO 通过 {@link TransportClientFactory} 连接，与生产环境的调用路径一致
+ *
+ * @author dev
+ *
+ */
+public class EmbeddedNode implements Closeable {
+	private static final String CLUSTER_NAME = "teclan-benchmark";
+
+	private final String home;
+	private final Node node;
+	private final TransportClient client;
+
+	public EmbeddedNode() throws IOException {
+		this.home = Files.createTempDirectory("teclan-es-benchmark").toString();
+		this.node = NodeBuilder.nodeBuilder().clusterName(CLUSTER_NAME)
+				.settings(Settings.settingsBuilder().put("path.home", home).put("network.host", "127.0.0.1")
+						.put("transport.tcp.port", "9390-9399").put("http.enabled", false)
+						.put("index.number_of_replicas", 0))
+				.node();
+		node.client().admin().cluster().prepareHealth().setWaitForGreenStatus().execute().actionGet();
+
+		NodesInfoResponse info = node.client().admin().cluster().prepareNodesInfo("_local").setTransport(true)
+				.execute().actionGet();
+		InetSocketTransportAddress address = (InetSocketTransportAddress) info.getNodes()[0].getTransport()
+				.getAddress().publishAddress();
+		this.client = TransportClientFactory.get(CLUSTER_NAME, new String[] { "127.0.0.1" },
+				new int[] { address.address().getPort() });
+	}
+
+	public TransportClient getClient() {
+		return client;
+	}
+
+	/**
+	 * 刷新索引，使写入的文档可以被查询
+	 *
+	 * @param index
+	 */
+	public void refresh(String index) {
+		client.admin().indices().prepareRefresh(index).execute().actionGet();
+	}
+
+	/**
+	 * 删除索引
+	 *
+	 * @param index
+	 */
+	public void deleteIndex(String index) {
+		if (client.admin().indices().prepareExists(index).execute().actionGet().isExists()) {
+			client.admin().indices().prepareDelete(index).execute().actionGet();
+		}
+	}
+
+	@Override
+	public void close() {
+		TransportClientFactory.close(client);
+		node.close();
+		FileUtils.deleteFiles(home);
+	}
+}
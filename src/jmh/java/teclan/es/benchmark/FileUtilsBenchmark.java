@@ -0,0 +1,126 @@
+package teclan.es.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.alibaba.fastjson.JSONObject;
+
+import teclan.es.utils.FileAppender;
+import teclan.es.utils.FileUtils;
+import teclan.es.utils.JsonArrayReader;
+
+/**
+ * 文件读写：每次调用都打开文件的追加写（{@link FileUtils#randomWrite2File} 的 writeBytes 和 write，</br>
+ * 以及 {@link FileUtils#write2File}）与 {@link FileAppender} 的对比，整个读取与流式读取 JSON 数组
+ *
+ * @author dev
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FileUtilsBenchmark {
+	private static final int DOCUMENTS = 5000;
+
+	private String dir;
+	private String line;
+	private byte[] lineBytes;
+	private File jsonArray;
+	private String randomWrite2File;
+	private String write2File;
+	private FileAppender appender;
+
+	@Setup
+	public void setUp() throws IOException {
+		dir = Files.createTempDirectory("teclan-es-benchmark").toString();
+		line = BenchmarkDao.newDocument(1).toJSONString() + "\n";
+		lineBytes = line.getBytes(StandardCharsets.UTF_8);
+		jsonArray = new File(dir, "data.json");
+		FileUtils.write2File(jsonArray.getAbsolutePath(), BenchmarkDao.newDocuments(DOCUMENTS).toJSONString());
+	}
+
+	/**
+	 * 每轮重新创建写入的文件，避免文件无限增长
+	 */
+	@Setup(Level.Iteration)
+	public void openFiles() throws IOException {
+		randomWrite2File = new File(dir, "randomWrite2File.log").getAbsolutePath();
+		write2File = new File(dir, "write2File.log").getAbsolutePath();
+		appender = FileUtils.openAppender(new File(dir, "appender.log").getAbsolutePath());
+	}
+
+	@TearDown(Level.Iteration)
+	public void deleteFiles() throws IOException {
+		appender.close();
+		new File(randomWrite2File).delete();
+		new File(write2File).delete();
+		new File(dir, "appender.log").delete();
+	}
+
+	@TearDown
+	public void tearDown() {
+		FileUtils.deleteFiles(dir);
+	}
+
+	/**
+	 * 每次调用打开 RandomAccessFile、seek 到末尾后 writeBytes
+	 */
+	@Benchmark
+	public void randomWrite2File() {
+		FileUtils.randomWrite2File(randomWrite2File, line);
+	}
+
+	@Benchmark
+	public void randomWrite2FileBytes() {
+		FileUtils.randomWrite2File(randomWrite2File, lineBytes);
+	}
+
+	@Benchmark
+	public void write2File() {
+		FileUtils.write2File(write2File, line);
+	}
+
+	@Benchmark
+	public void appenderAppend() throws IOException {
+		appender.append(line);
+	}
+
+	@Benchmark
+	public String getContent() {
+		return FileUtils.getContent(jsonArray);
+	}
+
+	@Benchmark
+	public long openJsonArray() throws IOException {
+		long amount = 0;
+		JsonArrayReader reader = FileUtils.openJsonArray(jsonArray);
+		try {
+			while (reader.hasNext()) {
+				JSONObject document = reader.next();
+				amount += document.getLongValue("amount");
+			}
+		} finally {
+			reader.close();
+		}
+		return amount;
+	}
+}
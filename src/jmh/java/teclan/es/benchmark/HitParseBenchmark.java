@@ -0,0 +1,121 @@
+package teclan.es.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+
+/**
+ * 单个命中文档 _source 的解析方式对比，输入都是 ES 返回的原始字节：</br>
+ * getSourceAsString 后用 fastjson 解析、getSource 得到的 Map 包装为 JSONObject、绑定为 POJO
+ *
+ * @author dev
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class HitParseBenchmark {
+
+	private BytesReference source;
+
+	@Setup
+	public void setUp() {
+		source = new BytesArray(BenchmarkDao.newDocument(1).toJSONString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Benchmark
+	public JSONObject parseSourceAsString() {
+		return JSON.parseObject(source.toUtf8());
+	}
+
+	@Benchmark
+	public JSONObject wrapSourceMap() {
+		return new JSONObject(XContentHelper.convertToMap(source, false).v2());
+	}
+
+	@Benchmark
+	public Document bindSourceMap() {
+		return JSON.toJavaObject(new JSONObject(XContentHelper.convertToMap(source, false).v2()), Document.class);
+	}
+
+	@Benchmark
+	public Document bindSourceAsString() {
+		return JSON.parseObject(source.toUtf8(), Document.class);
+	}
+
+	public static class Document {
+		private String id;
+		private String name;
+		private String category;
+		private long amount;
+		private long createTime;
+		private String description;
+
+		public String getId() {
+			return id;
+		}
+
+		public void setId(String id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public String getCategory() {
+			return category;
+		}
+
+		public void setCategory(String category) {
+			this.category = category;
+		}
+
+		public long getAmount() {
+			return amount;
+		}
+
+		public void setAmount(long amount) {
+			this.amount = amount;
+		}
+
+		public long getCreateTime() {
+			return createTime;
+		}
+
+		public void setCreateTime(long createTime) {
+			this.createTime = createTime;
+		}
+
+		public String getDescription() {
+			return description;
+		}
+
+		public void setDescription(String description) {
+			this.description = description;
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package teclan.es.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.relops.snowflake.Snowflake;
+
+import teclan.es.utils.IdGenerater;
+
+/**
+ * 不同线程数下的 ID 生成吞吐量，单个节点每毫秒最多 4096 个 ID，线程数增加时主要体现 CAS 竞争的开销；</br>
+ * synchronized_* 为改为 CAS 之前的实现，作为对照
+ *
+ * @author dev
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class IdGeneraterBenchmark {
+
+	/**
+	 * 改为 CAS 之前的实现：所有线程同步调用同一个 {@link Snowflake}
+	 */
+	private static final Snowflake SNOWFLAKE = new Snowflake(1);
+
+	/**
+	 * 原实现在同一毫秒内超过 4096 个 ID 时由 {@link Snowflake} 抛出异常，这里捕获后重试，相当于调用方自行重试
+	 */
+	private static synchronized String synchronizedNextId() {
+		while (true) {
+			try {
+				return String.valueOf(SNOWFLAKE.next());
+			} catch (RuntimeException e) {
+				// 本毫秒序号已用尽
+			}
+		}
+	}
+
+	@Benchmark
+	@Threads(1)
+	public String synchronized_1() {
+		return synchronizedNextId();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public String synchronized_4() {
+		return synchronizedNextId();
+	}
+
+	@Benchmark
+	@Threads(16)
+	public String synchronized_16() {
+		return synchronizedNextId();
+	}
+
+	@Benchmark
+	@Threads(64)
+	public String synchronized_64() {
+		return synchronizedNextId();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public String getNextId_1() {
+		return IdGenerater.getNextId();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public String getNextId_4() {
+		return IdGenerater.getNextId();
+	}
+
+	@Benchmark
+	@Threads(16)
+	public String getNextId_16() {
+		return IdGenerater.getNextId();
+	}
+
+	@Benchmark
+	@Threads(64)
+	public String getNextId_64() {
+		return IdGenerater.getNextId();
+	}
+
+	@Benchmark
+	@Threads(64)
+	public long nextId_64() {
+		return IdGenerater.nextId();
+	}
+
+	/**
+	 * 每次调用生成 64 个 ID
+	 */
+	@Benchmark
+	@Threads(64)
+	public String[] nextIds_64() {
+		return IdGenerater.nextIds(64);
+	}
+}
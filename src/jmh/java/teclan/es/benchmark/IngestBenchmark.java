@@ -0,0 +1,90 @@
+package teclan.es.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.alibaba.fastjson.JSONArray;
+
+import teclan.es.RefreshPolicy;
+import teclan.es.utils.IdGenerater;
+
+/**
+ * 逐个写入与批量写入的对比，每次调用写入 batchSize 个文档
+ *
+ * @author dev
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class IngestBenchmark {
+
+	@Param({ "100", "1000" })
+	private int batchSize;
+
+	private EmbeddedNode node;
+	private BenchmarkDao dao;
+	private JSONArray documents;
+
+	@Setup
+	public void setUp() throws IOException {
+		node = new EmbeddedNode();
+		dao = new BenchmarkDao(node.getClient());
+		documents = BenchmarkDao.newDocuments(batchSize);
+	}
+
+	@TearDown
+	public void tearDown() {
+		dao.closeBulkWriter(1, TimeUnit.MINUTES);
+		node.close();
+	}
+
+	/**
+	 * 默认的刷新策略，每个文档写入后刷新
+	 */
+	@Benchmark
+	public void addDocument() {
+		for (int i = 0; i < documents.size(); i++) {
+			dao.addDocument(IdGenerater.getNextId(), documents.getJSONObject(i));
+		}
+	}
+
+	@Benchmark
+	public void addDocumentWithoutRefresh() {
+		for (int i = 0; i < documents.size(); i++) {
+			dao.addDocument(IdGenerater.getNextId(), documents.getJSONObject(i), RefreshPolicy.NONE);
+		}
+	}
+
+	@Benchmark
+	public Object bulkAddDocuments() {
+		return dao.bulkAddDocuments(documents, dao.getBulkActions(), dao.getBulkSizeInBytes(), false);
+	}
+
+	@Benchmark
+	public Object bufferedAddDocument() {
+		CompletableFuture<?>[] futures = new CompletableFuture<?>[documents.size()];
+		for (int i = 0; i < documents.size(); i++) {
+			futures[i] = dao.bufferedAddDocument(IdGenerater.getNextId(), documents.getJSONObject(i));
+		}
+		dao.getBulkWriter().flush();
+		return CompletableFuture.allOf(futures).join();
+	}
+}
@@ -0,0 +1,84 @@
+package teclan.es.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 按 id 获取文档，单个获取与批量获取
+ *
+ * @author dev
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LookupBenchmark {
+	private static final int DOCUMENTS = 10000;
+	private static final int BATCH = 100;
+
+	private EmbeddedNode node;
+	private BenchmarkDao dao;
+
+	@Setup
+	public void setUp() throws IOException {
+		node = new EmbeddedNode();
+		dao = new BenchmarkDao(node.getClient());
+		dao.load(DOCUMENTS);
+	}
+
+	@TearDown
+	public void tearDown() {
+		node.close();
+	}
+
+	@Benchmark
+	public Object queryById() {
+		return dao.queryById(BenchmarkDao.INDEX, BenchmarkDao.TYPE, randomId());
+	}
+
+	/**
+	 * 逐个获取 BATCH 个文档
+	 */
+	@Benchmark
+	public Object queryByIdLoop() {
+		List<Object> result = new ArrayList<Object>(BATCH);
+		for (int i = 0; i < BATCH; i++) {
+			result.add(dao.queryById(BenchmarkDao.INDEX, BenchmarkDao.TYPE, randomId()));
+		}
+		return result;
+	}
+
+	/**
+	 * 一次获取 BATCH 个文档
+	 */
+	@Benchmark
+	public Object queryByIds() {
+		List<String> ids = new ArrayList<String>(BATCH);
+		for (int i = 0; i < BATCH; i++) {
+			ids.add(randomId());
+		}
+		return dao.queryByIds(BenchmarkDao.INDEX, BenchmarkDao.TYPE, ids);
+	}
+
+	private static String randomId() {
+		return String.valueOf(ThreadLocalRandom.current().nextInt(DOCUMENTS));
+	}
+}
@@ -0,0 +1,72 @@
+package teclan.es.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.sort.SortBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 分页查询，currentPage 为 1 时是浅分页，399 时偏移量为 9950，接近默认的 max_result_window
+ *
+ * @author dev
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class QueryBenchmark {
+	private static final int DOCUMENTS = 10000;
+	private static final int PAGE_SIZE = 25;
+
+	@Param({ "1", "40", "399" })
+	private int currentPage;
+
+	private EmbeddedNode node;
+	private BenchmarkDao dao;
+	private BoolQueryBuilder boolQuery;
+	private SortBuilder sort;
+
+	@Setup
+	public void setUp() throws IOException {
+		node = new EmbeddedNode();
+		dao = new BenchmarkDao(node.getClient());
+		dao.load(DOCUMENTS);
+		boolQuery = QueryBuilders.boolQuery().must(QueryBuilders.rangeQuery("amount").gte(0));
+		sort = SortBuilders.fieldSort("createTime").order(SortOrder.DESC);
+	}
+
+	@TearDown
+	public void tearDown() {
+		node.close();
+	}
+
+	@Benchmark
+	public Object query() {
+		return dao.query(BenchmarkDao.INDEX, BenchmarkDao.TYPE, currentPage, PAGE_SIZE, boolQuery, sort);
+	}
+
+	@Benchmark
+	public Object queryWithProjection() {
+		return dao.query(BenchmarkDao.INDEX, BenchmarkDao.TYPE, currentPage, PAGE_SIZE,
+				new String[] { "id", "name", "amount" }, null, boolQuery, sort);
+	}
+}
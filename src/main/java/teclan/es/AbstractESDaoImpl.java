@@ -1,17 +1,70 @@
 package teclan.es;
 
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionRequestBuilder;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.bulk.BackoffPolicy;
+import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.count.CountRequestBuilder;
 import org.elasticsearch.action.count.CountResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequestBuilder;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.query.RangeQueryBuilder;
 import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.aggregations.AbstractAggregationBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.sort.SortBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,18 +72,161 @@ import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 
+import teclan.es.metrics.Metrics;
+import teclan.es.metrics.MetricsListener;
+import teclan.es.utils.AggregationUtils;
+import teclan.es.utils.FileUtils;
 import teclan.es.utils.IdGenerater;
+import teclan.es.utils.LocalCache;
 import teclan.es.utils.PageInfoUtils;
 
 public abstract class AbstractESDaoImpl {
 	private static final Logger LOGGER = LoggerFactory.getLogger(AbstractESDaoImpl.class);
 
+	private BulkWriter bulkWriter;
+	private LocalCache<String> documentCache;
+	private QueryResultCache queryResultCache;
+	private SlowQueryRecorder slowQueryRecorder;
+	private SingleFlight<JSONObject> readSingleFlight;
+	private GetBatcher getBatcher;
+
 	public abstract TransportClient getTransportClient();
 
 	public abstract String getIndex();
 
 	public abstract String getType();
 
+	/**
+	 * 记录调用耗时、文档数、拒绝等指标，默认为全局的 {@link Metrics#getListener()}，子类可覆盖
+	 * 
+	 * @return
+	 */
+	public MetricsListener getMetricsListener() {
+		return Metrics.getListener();
+	}
+
+	/**
+	 * 执行请求并记录指标，往返耗时超过 {@link #getSlowQueryThresholdMillis()} 时按采样率记录为慢查询
+	 * 
+	 * @param operation 操作名，见 {@link MetricsListener} 中的常量
+	 * @param index
+	 * @param builder
+	 * @return
+	 */
+	protected <Response extends ActionResponse> Response execute(String operation, String index,
+			ActionRequestBuilder<?, Response, ?> builder) {
+		long threshold = getSlowQueryThresholdMillis();
+		if (threshold <= 0) {
+			return Metrics.execute(getMetricsListener(), operation, index, builder);
+		}
+
+		SearchSourceBuilder profiled = enableProfile(builder);
+		try {
+			long start = System.nanoTime();
+			Response response = Metrics.execute(getMetricsListener(), operation, index, builder);
+			recordSlowQuery(operation, index, builder, response, System.nanoTime() - start, threshold);
+			return response;
+		} finally {
+			disableProfile(profiled);
+		}
+	}
+
+	/**
+	 * 按 {@link #getSlowQueryProfileRate()} 只为本次请求开启 profile，调用方可能复用 builder，请求发出后需恢复
+	 * 
+	 * @return 开启了 profile 的 SearchSourceBuilder，未开启时为 null
+	 */
+	private SearchSourceBuilder enableProfile(ActionRequestBuilder<?, ?, ?> builder) {
+		if (builder instanceof SearchRequestBuilder && sample(getSlowQueryProfileRate())) {
+			SearchSourceBuilder source = ((SearchRequestBuilder) builder).internalBuilder();
+			// 没有 SearchSourceBuilder 时查询可能是以原始内容设置的，不能另建一个覆盖它
+			if (source != null && !source.profile()) {
+				return source.profile(true);
+			}
+		}
+		return null;
+	}
+
+	private static void disableProfile(SearchSourceBuilder profiled) {
+		if (profiled != null) {
+			profiled.profile(false);
+		}
+	}
+
+	private void recordSlowQuery(String operation, String index, ActionRequestBuilder<?, ?, ?> builder,
+			ActionResponse response, long roundTrip, long threshold) {
+		if (roundTrip >= TimeUnit.MILLISECONDS.toNanos(threshold) && sample(getSlowQuerySampleRate())) {
+			try {
+				getSlowQueryRecorder().record(operation, index, builder, response, roundTrip);
+			} catch (Exception e) {
+				LOGGER.error(e.getMessage(), e);
+			}
+		}
+	}
+
+	private static boolean sample(double rate) {
+		return rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+	}
+
+	/**
+	 * 慢查询阈值（毫秒），小于等于 0 表示不记录，默认不记录，子类可覆盖
+	 * 
+	 * @return
+	 */
+	public long getSlowQueryThresholdMillis() {
+		return 0;
+	}
+
+	/**
+	 * 超过阈值的请求中实际记录的比例，0 ~ 1，子类可覆盖
+	 * 
+	 * @return
+	 */
+	public double getSlowQuerySampleRate() {
+		return 1;
+	}
+
+	/**
+	 * 开启 profile 的查询比例，0 ~ 1，开启后慢查询记录中包含每个分片的耗时分解；</br>
+	 * profile 会增加 ES 端的开销，默认不开启，子类可覆盖
+	 * 
+	 * @return
+	 */
+	public double getSlowQueryProfileRate() {
+		return 0;
+	}
+
+	/**
+	 * 最多保留的慢查询记录数，子类可覆盖
+	 * 
+	 * @return
+	 */
+	public int getSlowQueryCapacity() {
+		return 256;
+	}
+
+	public synchronized SlowQueryRecorder getSlowQueryRecorder() {
+		if (slowQueryRecorder == null) {
+			slowQueryRecorder = new SlowQueryRecorder(getSlowQueryCapacity());
+		}
+		return slowQueryRecorder;
+	}
+
+	/**
+	 * 将保留的慢查询记录追加到文件，每行一个 JSON
+	 * 
+	 * @param fileName
+	 * @return 写入的记录数
+	 */
+	public int dumpSlowQueries(String fileName) {
+		try {
+			return getSlowQueryRecorder().dump(fileName);
+		} catch (IOException e) {
+			LOGGER.error(e.getMessage(), e);
+			return 0;
+		}
+	}
+
 	/**
 	 * 添加文档
 	 * 
@@ -39,30 +235,199 @@ public abstract class AbstractESDaoImpl {
 	 * @return
 	 */
 	public boolean addDocument(String id, JSONObject document) {
+		return addDocument(id, document, getRefreshPolicy());
+	}
+
+	/**
+	 * 添加文档
+	 * 
+	 * @param id
+	 * @param document
+	 * @param refreshPolicy 刷新策略
+	 * @return
+	 */
+	public boolean addDocument(String id, JSONObject document, RefreshPolicy refreshPolicy) {
 		if (!document.containsKey("id")) {
 			document.put("id", id);
 		}
 
-		getTransportClient().prepareIndex(getIndex(), getType(), id).setSource(document).setRefresh(true).execute()
-				.actionGet();
+		execute(MetricsListener.INDEX, getIndex(), getTransportClient().prepareIndex(getIndex(), getType(), id)
+				.setSource(document).setRefresh(refreshPolicy == RefreshPolicy.IMMEDIATE));
+		afterWrite(id, refreshPolicy);
 		return true;
 	}
 
 	/**
-	 * 添加多个文档
+	 * 添加多个文档，按 {@link #getBulkActions()} 和 {@link #getBulkSizeInBytes()} 分批批量写入
 	 * 
 	 * @param index
 	 * @param type
 	 * @param documents
-	 * @return
+	 * @return 全部写入成功返回 true
 	 */
 	public boolean addDocuments(JSONArray documents) {
+		RefreshPolicy refreshPolicy = getRefreshPolicy();
+		JSONObject report = bulkAddDocuments(documents, getBulkActions(), getBulkSizeInBytes(),
+				refreshPolicy == RefreshPolicy.IMMEDIATE);
+		afterWrite(null, refreshPolicy);
+		return report.getIntValue("failed") == 0;
+	}
+
+	/**
+	 * 批量添加文档，每个批次达到文档数或字节数上限时提交一次，全部提交后按需刷新一次索引
+	 * 
+	 * @param documents
+	 * @param bulkActions     单批次最大文档数
+	 * @param bulkSizeInBytes 单批次最大字节数
+	 * @param refresh         全部写入后是否刷新索引
+	 * @return 写入报告，包含 total、succeeded、failed、took 以及失败明细 failures（position、id、message）
+	 */
+	public JSONObject bulkAddDocuments(JSONArray documents, int bulkActions, long bulkSizeInBytes, boolean refresh) {
+		long start = System.currentTimeMillis();
+		JSONArray failures = new JSONArray();
+		int succeeded = 0;
 
+		BulkRequestBuilder builder = getTransportClient().prepareBulk();
+		int batchStart = 0;
 		for (int i = 0; i < documents.size(); i++) {
 			JSONObject document = documents.getJSONObject(i);
-			addDocument(IdGenerater.getNextId(), document);
+			String id = nextDocumentId();
+			if (!document.containsKey("id")) {
+				document.put("id", id);
+			}
+			builder.add(getTransportClient().prepareIndex(getIndex(), getType(), id).setSource(document));
+
+			if (builder.numberOfActions() >= bulkActions
+					|| builder.request().estimatedSizeInBytes() >= bulkSizeInBytes) {
+				succeeded += executeBulk(builder, batchStart, failures);
+				builder = getTransportClient().prepareBulk();
+				batchStart = i + 1;
+			}
 		}
-		return true;
+		if (builder.numberOfActions() > 0) {
+			succeeded += executeBulk(builder, batchStart, failures);
+		}
+
+		if (refresh) {
+			execute(MetricsListener.REFRESH, getIndex(),
+					getTransportClient().admin().indices().prepareRefresh(getIndex()));
+		}
+
+		JSONObject report = new JSONObject();
+		report.put("total", documents.size());
+		report.put("succeeded", succeeded);
+		report.put("failed", failures.size());
+		report.put("took", System.currentTimeMillis() - start);
+		report.put("failures", failures);
+		return report;
+	}
+
+	/**
+	 * 在批量导入会话中执行导入：导入前关闭当前索引的自动刷新并将副本数设为 0，</br>
+	 * 导入结束后（包括失败时）恢复原设置、按需强制合并并等待索引恢复为 green
+	 * 
+	 * @param load           导入操作，例如调用 {@link #bulkAddDocuments(JSONArray, int, long, boolean)}
+	 * @param maxNumSegments 导入后强制合并到的段数，小于等于 0 表示不合并
+	 * @return load 的返回值
+	 * @throws Exception load 抛出的异常
+	 */
+	public <T> T bulkLoad(Callable<T> load, int maxNumSegments) throws Exception {
+		BulkLoadSession session = new BulkLoadSession(getTransportClient(), getIndex(), maxNumSegments,
+				getBulkLoadGreenTimeoutMillis());
+		session.open();
+		try {
+			return load.call();
+		} finally {
+			session.close();
+		}
+	}
+
+	/**
+	 * 批量导入结束后等待索引恢复为 green 的时间（毫秒），子类可覆盖
+	 * 
+	 * @return
+	 */
+	public long getBulkLoadGreenTimeoutMillis() {
+		return 5 * 60 * 1000L;
+	}
+
+	/**
+	 * 为批量写入的文档生成 _id，{@link #isCompactIds()} 为 true 时使用 11 位 62 进制，否则为十进制
+	 * 
+	 * @return
+	 */
+	protected String nextDocumentId() {
+		long id = IdGenerater.nextId();
+		return isCompactIds() ? IdGenerater.toBase62(id) : Long.toString(id);
+	}
+
+	/**
+	 * 批量写入时是否使用 62 进制的短 _id，默认为 false 保持十进制，子类可覆盖
+	 * 
+	 * @return
+	 */
+	public boolean isCompactIds() {
+		return false;
+	}
+
+	/**
+	 * 提交一个批次，失败的条目记录到 failures 中
+	 * 
+	 * @param builder
+	 * @param batchStart 本批次第一个文档在原始数组中的位置
+	 * @param failures
+	 * @return 本批次成功的文档数
+	 */
+	private int executeBulk(BulkRequestBuilder builder, int batchStart, JSONArray failures) {
+		int succeeded = 0;
+		try {
+			BulkResponse response = execute(MetricsListener.BULK, getIndex(), builder);
+			int rejections = Metrics.getRejections(response);
+			for (int i = 0; i < rejections; i++) {
+				getMetricsListener().onRejection(MetricsListener.BULK, getIndex());
+			}
+			for (BulkItemResponse item : response.getItems()) {
+				if (item.isFailed()) {
+					failures.add(getFailure(batchStart + item.getItemId(), item.getId(), item.getFailureMessage()));
+				} else {
+					succeeded++;
+				}
+			}
+		} catch (Exception e) {
+			LOGGER.error(e.getMessage(), e);
+			@SuppressWarnings("rawtypes")
+			List<ActionRequest> requests = builder.request().requests();
+			for (int i = 0; i < requests.size(); i++) {
+				failures.add(getFailure(batchStart + i, ((IndexRequest) requests.get(i)).id(), e.getMessage()));
+			}
+		}
+		return succeeded;
+	}
+
+	private JSONObject getFailure(int position, String id, String message) {
+		JSONObject failure = new JSONObject();
+		failure.put("position", position);
+		failure.put("id", id);
+		failure.put("message", message);
+		return failure;
+	}
+
+	/**
+	 * 批量写入时单批次最大文档数，子类可覆盖
+	 * 
+	 * @return
+	 */
+	public int getBulkActions() {
+		return 1000;
+	}
+
+	/**
+	 * 批量写入时单批次最大字节数，子类可覆盖
+	 * 
+	 * @return
+	 */
+	public long getBulkSizeInBytes() {
+		return 5 * 1024 * 1024;
 	}
 
 	/**
@@ -74,8 +439,20 @@ public abstract class AbstractESDaoImpl {
 	 * @return
 	 */
 	public boolean deleteDocument(String id) {
-		DeleteResponse result = getTransportClient().prepareDelete().setRefresh(true).setIndex(getIndex())
-				.setType(getType()).setId(id).execute().actionGet();
+		return deleteDocument(id, getRefreshPolicy());
+	}
+
+	/**
+	 * 删除文档
+	 * 
+	 * @param id
+	 * @param refreshPolicy 刷新策略
+	 * @return
+	 */
+	public boolean deleteDocument(String id, RefreshPolicy refreshPolicy) {
+		DeleteResponse result = execute(MetricsListener.DELETE, getIndex(), getTransportClient().prepareDelete()
+				.setRefresh(refreshPolicy == RefreshPolicy.IMMEDIATE).setIndex(getIndex()).setType(getType()).setId(id));
+		afterWrite(id, refreshPolicy);
 
 		boolean isfound = result.isFound();// 是否删除成功
 		return isfound;
@@ -91,114 +468,1087 @@ public abstract class AbstractESDaoImpl {
 	 * @return
 	 */
 	public boolean updateDocument( String id, JSONObject namesAndValues) {
+		return updateDocument(id, namesAndValues, getRefreshPolicy());
+	}
+
+	/**
+	 * 修改文档
+	 * 
+	 * @param id
+	 * @param namesAndValues 新的字段和值
+	 * @param refreshPolicy  刷新策略
+	 * @return 修改成功时为 true；请求失败或被拒绝（如索引迁移期间的写入锁、文档不存在）时为 false
+	 */
+	public boolean updateDocument(String id, JSONObject namesAndValues, RefreshPolicy refreshPolicy) {
 		UpdateRequest updateRequest = new UpdateRequest(getIndex(), getType(), id);
 		updateRequest.doc(namesAndValues);
 
-		BulkRequestBuilder builder = getTransportClient().prepareBulk().setRefresh(true);
+		BulkRequestBuilder builder = getTransportClient().prepareBulk()
+				.setRefresh(refreshPolicy == RefreshPolicy.IMMEDIATE);
 		builder.add(updateRequest);
+		boolean updated = false;
 		try {
-			builder.execute().actionGet();
+			BulkResponse response = execute(MetricsListener.UPDATE, getIndex(), builder);
+			if (response.hasFailures()) {
+				LOGGER.error(response.buildFailureMessage());
+			} else {
+				updated = true;
+			}
 		} catch (Exception e) {
 			LOGGER.error(e.getMessage(), e);
 		}
-		return true;
+		afterWrite(id, refreshPolicy);
+		return updated;
 	}
 
 	/**
-	 * 统计文档数量
+	 * 写操作完成后使本地缓存中的文档和查询结果失效，并按刷新策略处理，DEFERRED 时交给 {@link RefreshCoalescer} 合并刷新；</br>
+	 * 非 IMMEDIATE 时写入在刷新前对查询不可见，刷新后（NONE 时为 {@link #getIndexRefreshIntervalMillis()} 之后）再使查询结果失效一次
 	 * 
-	 * @param index
-	 * @param type
-	 * @param boolQuery
-	 * @return
+	 * @param id            写入的文档 id，批量写入时为 null
+	 * @param refreshPolicy
 	 */
-	@SuppressWarnings("deprecation")
-	public long count(String index, String type, BoolQueryBuilder boolQuery) {
-		CountRequestBuilder countRequestBuilder = getTransportClient().prepareCount(index).setTypes(type)
-				.setQuery(boolQuery);
-		CountResponse countResponse = countRequestBuilder.execute().actionGet();
-
-		return countResponse.getCount();
+	protected void afterWrite(String id, RefreshPolicy refreshPolicy) {
+		QueryResultCache.bump(getIndex());
+		LocalCache<String> documentCache = getDocumentCache();
+		if (documentCache != null && id != null) {
+			documentCache.invalidate(getDocumentCacheKey(getIndex(), getType(), id));
+		}
+		if (refreshPolicy == RefreshPolicy.DEFERRED) {
+			getRefreshCoalescer().requestRefresh(getIndex(), getRefreshWindowMillis());
+		} else if (refreshPolicy == RefreshPolicy.NONE) {
+			QueryResultCache.bumpAfter(getIndex(), getIndexRefreshIntervalMillis());
+		}
 	}
 
 	/**
-	 * 获取文档列表信息
+	 * NONE 策略下写入到对查询可见的最长时间（毫秒），应不小于索引的 refresh_interval 加上一次刷新的耗时，</br>
+	 * 默认 2 秒（ES 默认的 refresh_interval 为 1 秒），子类可覆盖
 	 * 
-	 * @param index
-	 * @param type
-	 * @param currentPage
-	 * @param pageSize
-	 * @param boolQuery
-	 * @param sorts
 	 * @return
 	 */
-	public JSONObject query(String index, String type, int currentPage, int pageSize, BoolQueryBuilder boolQuery,
-			SortBuilder... sorts) {
-
-		long total = count(index, type, boolQuery);
-		int totalPages = PageInfoUtils.getTotalPages(total, pageSize);
+	public long getIndexRefreshIntervalMillis() {
+		return 2000;
+	}
 
-		int offset = PageInfoUtils.getOffset(currentPage, pageSize, totalPages);
+	/**
+	 * 写操作默认的刷新策略，默认每次写后立即刷新，子类可覆盖
+	 * 
+	 * @return
+	 */
+	public RefreshPolicy getRefreshPolicy() {
+		return RefreshPolicy.IMMEDIATE;
+	}
 
-		SearchRequestBuilder searchRequestBuilder = getTransportClient().prepareSearch(index).setTypes(type)
-				.setQuery(boolQuery).setFrom(offset).setSize(pageSize);
+	/**
+	 * DEFERRED 策略下合并刷新的时间窗口（毫秒），子类可覆盖
+	 * 
+	 * @return
+	 */
+	public long getRefreshWindowMillis() {
+		return 1000;
+	}
 
-		for (SortBuilder sort : sorts) {
-			searchRequestBuilder.addSort(sort);
-		}
-		SearchResponse searchResponse = searchRequestBuilder.execute().actionGet();
+	/**
+	 * 合并刷新，默认为客户端共享的实例，同一集群上操作同一索引的 DAO 共用，子类可覆盖
+	 * 
+	 * @return
+	 */
+	public RefreshCoalescer getRefreshCoalescer() {
+		return RefreshCoalescer.get(getTransportClient());
+	}
 
-		JSONArray array = new JSONArray();
-		for (SearchHit hit : searchResponse.getHits()) {
-			array.add(JSON.parseObject(hit.getSourceAsString()));
+	/**
+	 * 通过异步写缓冲添加文档，不阻塞调用方（缓冲区满时除外）
+	 * 
+	 * @param id
+	 * @param document
+	 * @return 该文档的写入结果
+	 */
+	public CompletableFuture<BulkItemResponse> bufferedAddDocument(String id, JSONObject document) {
+		if (!document.containsKey("id")) {
+			document.put("id", id);
 		}
+		return afterBufferedWrite(id, getBulkWriter().add(new IndexRequest(getIndex(), getType(), id).source(document)));
+	}
 
-		JSONObject pageInfo = PageInfoUtils.getPageInfo(total, totalPages, currentPage, pageSize);
-
-		JSONObject result = new JSONObject();
-		result.put("pageInfo", pageInfo);
-		result.put("result", array);
-		result.put("code", "200");
-		result.put("message", "查询成功");
+	/**
+	 * 通过异步写缓冲删除文档
+	 * 
+	 * @param id
+	 * @return 该文档的删除结果
+	 */
+	public CompletableFuture<BulkItemResponse> bufferedDeleteDocument(String id) {
+		return afterBufferedWrite(id, getBulkWriter().add(new DeleteRequest(getIndex(), getType(), id)));
+	}
 
-		return result;
+	/**
+	 * 通过异步写缓冲修改文档
+	 * 
+	 * @param id
+	 * @param namesAndValues 新的字段和值
+	 * @return 该文档的修改结果
+	 */
+	public CompletableFuture<BulkItemResponse> bufferedUpdateDocument(String id, JSONObject namesAndValues) {
+		return afterBufferedWrite(id, getBulkWriter().add(new UpdateRequest(getIndex(), getType(), id).doc(namesAndValues)));
 	}
 
-	public JSONObject query(String index, String type, BoolQueryBuilder boolQuery, SortBuilder... sorts) {
+	/**
+	 * 异步写缓冲不支持 IMMEDIATE，写入完成后使缓存失效，策略为 DEFERRED 时合并刷新
+	 * 
+	 * @param id
+	 * @param future
+	 * @return
+	 */
+	private CompletableFuture<BulkItemResponse> afterBufferedWrite(final String id,
+			CompletableFuture<BulkItemResponse> future) {
+		final RefreshPolicy refreshPolicy = getRefreshPolicy() == RefreshPolicy.DEFERRED ? RefreshPolicy.DEFERRED
+				: RefreshPolicy.NONE;
+		return future.whenComplete(new BiConsumer<BulkItemResponse, Throwable>() {
 
-		SearchRequestBuilder searchRequestBuilder = getTransportClient().prepareSearch(index).setTypes(type)
-				.setQuery(boolQuery);
+			@Override
+			public void accept(BulkItemResponse item, Throwable failure) {
+				afterWrite(id, refreshPolicy);
+			}
+		});
+	}
 
-		for (SortBuilder sort : sorts) {
-			searchRequestBuilder.addSort(sort);
+	/**
+	 * 获取异步写缓冲，首次使用时创建
+	 * 
+	 * @return
+	 */
+	public synchronized BulkWriter getBulkWriter() {
+		if (bulkWriter == null) {
+			bulkWriter = new BulkWriter(getTransportClient(), getIndex() + "/" + getType(), getBulkActions(),
+					getBulkSizeInBytes(), getBulkFlushIntervalMillis(), getBulkConcurrentRequests(),
+					getBulkBufferedActions(), getBulkBackoffPolicy(), getMetricsListener(), getIndex());
 		}
-		SearchResponse searchResponse = searchRequestBuilder.execute().actionGet();
+		return bulkWriter;
+	}
 
-		JSONArray array = new JSONArray();
-		for (SearchHit hit : searchResponse.getHits()) {
-			array.add(JSON.parseObject(hit.getSourceAsString()));
+	/**
+	 * 提交异步写缓冲中剩余的请求并关闭
+	 * 
+	 * @param timeout
+	 * @param unit
+	 * @return 在超时前全部完成返回 true
+	 */
+	public synchronized boolean closeBulkWriter(long timeout, TimeUnit unit) {
+		if (bulkWriter == null) {
+			return true;
 		}
-
-		JSONObject result = new JSONObject();
-		result.put("result", array);
-
-		return result;
+		boolean closed = bulkWriter.awaitClose(timeout, unit);
+		bulkWriter = null;
+		return closed;
 	}
 
-	public JSONObject queryById(String index, String type, String id) {
-
-		BoolQueryBuilder boolQuery = new BoolQueryBuilder();
-		boolQuery.must(QueryBuilders.wildcardQuery("id", id));
-
-		SearchRequestBuilder searchRequestBuilder = getTransportClient().prepareSearch(index).setTypes(type)
+	/**
+	 * 异步写缓冲的定时提交间隔（毫秒），子类可覆盖
+	 * 
+	 * @return
+	 */
+	public long getBulkFlushIntervalMillis() {
+		return 1000;
+	}
+
+	/**
+	 * 异步写缓冲同时在途的批次数，子类可覆盖
+	 * 
+	 * @return
+	 */
+	public int getBulkConcurrentRequests() {
+		return 2;
+	}
+
+	/**
+	 * 异步写缓冲最多容纳的未完成写请求数，超过时阻塞生产者，子类可覆盖
+	 * 
+	 * @return
+	 */
+	public int getBulkBufferedActions() {
+		return 10000;
+	}
+
+	/**
+	 * 写入被拒绝的条目的重试策略，默认从 100 毫秒开始指数退避，最多重试 8 次，子类可覆盖
+	 * 
+	 * @return
+	 */
+	public BackoffPolicy getBulkBackoffPolicy() {
+		return BackoffPolicy.exponentialBackoff(TimeValue.timeValueMillis(100), 8);
+	}
+
+	/**
+	 * 统计文档数量
+	 * 
+	 * @param index
+	 * @param type
+	 * @param boolQuery
+	 * @return
+	 */
+	@SuppressWarnings("deprecation")
+	public long count(String index, String type, BoolQueryBuilder boolQuery) {
+		CountRequestBuilder countRequestBuilder = getTransportClient().prepareCount(index).setTypes(type)
+				.setQuery(boolQuery);
+		CountResponse countResponse = execute(MetricsListener.COUNT, index, countRequestBuilder);
+
+		return countResponse.getCount();
+	}
+
+	/**
+	 * 聚合统计，不返回文档（size=0），分组和计算都在分片上完成
+	 * 
+	 * 聚合通过 {@link org.elasticsearch.search.aggregations.AggregationBuilders} 构建，如 terms、dateHistogram、</br>
+	 * range、cardinality、stats，结果的结构见 {@link AggregationUtils}
+	 * 
+	 * @param index
+	 * @param type
+	 * @param query
+	 * @param aggregations
+	 * @return {"total":命中的文档数,"took":耗时毫秒,"aggregations":{聚合名称:结果},"code","message"}
+	 */
+	public JSONObject aggregate(String index, String type, QueryBuilder query,
+			AbstractAggregationBuilder... aggregations) {
+		SearchRequestBuilder searchRequestBuilder = getTransportClient().prepareSearch(index).setTypes(type)
+				.setQuery(query).setSize(0);
+		for (AbstractAggregationBuilder aggregation : aggregations) {
+			searchRequestBuilder.addAggregation(aggregation);
+		}
+		SearchResponse searchResponse = execute(MetricsListener.SEARCH, index, searchRequestBuilder);
+
+		JSONObject result = new JSONObject();
+		result.put("total", searchResponse.getHits().getTotalHits());
+		result.put("took", searchResponse.getTookInMillis());
+		result.put("aggregations", AggregationUtils.toJson(searchResponse.getAggregations()));
+		result.put("code", "200");
+		result.put("message", "查询成功");
+		return result;
+	}
+
+	/**
+	 * 按字段分组计数，替代逐个分组调用 {@link #count(String, String, BoolQueryBuilder)}
+	 * 
+	 * @param index
+	 * @param type
+	 * @param field 不分词的字段
+	 * @param size  返回的分组数，按文档数从多到少
+	 * @param query
+	 * @return 分组值到文档数的映射，按文档数从多到少排列
+	 */
+	public JSONObject countBy(String index, String type, String field, int size, QueryBuilder query) {
+		SearchResponse searchResponse = execute(MetricsListener.SEARCH, index,
+				getTransportClient().prepareSearch(index).setTypes(type).setQuery(query).setSize(0)
+						.addAggregation(AggregationBuilders.terms(field).field(field).size(size)));
+
+		Terms terms = searchResponse.getAggregations().get(field);
+		JSONObject result = new JSONObject(true);
+		for (Terms.Bucket bucket : terms.getBuckets()) {
+			result.put(bucket.getKeyAsString(), bucket.getDocCount());
+		}
+		return result;
+	}
+
+	/**
+	 * 获取文档列表信息，总数和当前页数据在同一次查询中获取；</br>
+	 * 页码超出范围时不再额外查询，返回空列表，pageInfo 中的页码为请求的页码；页码小于 1 时按第一页返回
+	 * 
+	 * @param index
+	 * @param type
+	 * @param currentPage
+	 * @param pageSize
+	 * @param boolQuery
+	 * @param sorts
+	 * @return
+	 */
+	public JSONObject query(String index, String type, int currentPage, int pageSize, BoolQueryBuilder boolQuery,
+			SortBuilder... sorts) {
+		return query(index, type, currentPage, pageSize, 0, boolQuery, sorts);
+	}
+
+	/**
+	 * 获取文档列表信息，不统计精确总数
+	 * 
+	 * 每个分片收集到 terminateAfter 条文档后即停止，适用于结果集很大、只需要前若干页的场景。</br>
+	 * 结果是近似的：提前终止时 pageInfo 中 exact 为 false，total 只是已收集的文档数（下限）；</br>
+	 * 返回的文档只来自每个分片按索引顺序收集到的前 terminateAfter 条，超出已收集文档的页为空。</br>
+	 * 排序只能在已收集的文档内进行，得到的不是全局的前几条，因此 terminateAfter 大于 0 时只允许</br>
+	 * 不指定排序或按 _doc 升序排序
+	 * 
+	 * @param index
+	 * @param type
+	 * @param currentPage
+	 * @param pageSize
+	 * @param terminateAfter 每个分片最多收集的文档数，小于等于 0 表示统计精确总数
+	 * @param boolQuery
+	 * @param sorts
+	 * @return
+	 * @throws IllegalArgumentException terminateAfter 大于 0 且指定了 _doc 升序以外的排序
+	 */
+	public JSONObject query(final String index, final String type, final int currentPage, final int pageSize,
+			final int terminateAfter, final BoolQueryBuilder boolQuery, final SortBuilder... sorts) {
+		if (terminateAfter > 0) {
+			for (SortBuilder sort : sorts) {
+				if (!isDocOrder(sort)) {
+					throw new IllegalArgumentException(
+							"terminateAfter only supports unsorted or _doc sorted queries: " + sort);
+				}
+			}
+		}
+
+		final QueryResultCache queryResultCache = getQueryResultCache();
+		String key = null;
+		if (queryResultCache != null || isReadCoalescingEnabled()) {
+			key = QueryResultCache.getKey(index, type, currentPage, pageSize, terminateAfter, null, null, boolQuery,
+					sorts);
+		}
+		if (queryResultCache != null) {
+			JSONObject cached = queryResultCache.get(key);
+			if (cached != null) {
+				return cached;
+			}
+		}
+
+		final String cacheKey = key;
+		return coalesce(key, new Callable<JSONObject>() {
+
+			@Override
+			public JSONObject call() {
+				SearchResponse searchResponse = searchPage(index, type, currentPage, pageSize, terminateAfter, null,
+						null, null, boolQuery, sorts);
+
+				long start = System.nanoTime();
+				JSONArray array = new JSONArray();
+				for (SearchHit hit : searchResponse.getHits()) {
+					array.add(JSON.parseObject(hit.getSourceAsString()));
+				}
+				getMetricsListener().onRequest(MetricsListener.PARSE, index, System.nanoTime() - start, 0,
+						array.size(), false);
+
+				JSONObject result = getPageResult(searchResponse, currentPage, pageSize, array);
+
+				if (queryResultCache != null) {
+					return queryResultCache.put(cacheKey, result);
+				}
+				return result;
+			}
+		});
+	}
+
+	/**
+	 * 获取文档列表信息，同一次查询中返回聚合结果
+	 * 
+	 * @param index
+	 * @param type
+	 * @param currentPage
+	 * @param pageSize
+	 * @param aggregations
+	 * @param boolQuery
+	 * @param sorts
+	 * @return 在分页结果的基础上增加 aggregations，结构见 {@link AggregationUtils}
+	 */
+	public JSONObject query(String index, String type, int currentPage, int pageSize,
+			AbstractAggregationBuilder[] aggregations, BoolQueryBuilder boolQuery, SortBuilder... sorts) {
+
+		SearchResponse searchResponse = searchPage(index, type, currentPage, pageSize, 0, null, null, aggregations,
+				boolQuery, sorts);
+
+		long start = System.nanoTime();
+		JSONArray array = new JSONArray();
+		for (SearchHit hit : searchResponse.getHits()) {
+			array.add(new JSONObject(hit.getSource()));
+		}
+		getMetricsListener().onRequest(MetricsListener.PARSE, index, System.nanoTime() - start, 0, array.size(),
+				false);
+
+		JSONObject result = getPageResult(searchResponse, currentPage, pageSize, array);
+		result.put("aggregations", AggregationUtils.toJson(searchResponse.getAggregations()));
+		return result;
+	}
+
+	/**
+	 * 获取文档列表信息，只返回指定的字段
+	 * 
+	 * 字段过滤在 ES 端完成，文档直接使用 ES 解析好的 _source，不再经过字符串重新解析；</br>
+	 * 嵌套的对象和数组转换为 JSONObject 和 JSONArray，与是否命中查询结果缓存无关
+	 * 
+	 * @param index
+	 * @param type
+	 * @param currentPage
+	 * @param pageSize
+	 * @param includes    返回的字段，支持通配符，为 null 时返回全部字段
+	 * @param excludes    排除的字段，可为 null
+	 * @param boolQuery
+	 * @param sorts
+	 * @return
+	 */
+	public JSONObject query(final String index, final String type, final int currentPage, final int pageSize,
+			final String[] includes, final String[] excludes, final BoolQueryBuilder boolQuery,
+			final SortBuilder... sorts) {
+
+		final QueryResultCache queryResultCache = getQueryResultCache();
+		String key = null;
+		if (queryResultCache != null || isReadCoalescingEnabled()) {
+			key = QueryResultCache.getKey(index, type, currentPage, pageSize, 0, includes, excludes, boolQuery,
+					sorts);
+		}
+		if (queryResultCache != null) {
+			JSONObject cached = queryResultCache.get(key);
+			if (cached != null) {
+				return cached;
+			}
+		}
+
+		final String cacheKey = key;
+		return coalesce(key, new Callable<JSONObject>() {
+
+			@Override
+			public JSONObject call() {
+				SearchResponse searchResponse = searchPage(index, type, currentPage, pageSize, 0, includes, excludes,
+						null, boolQuery, sorts);
+
+				long start = System.nanoTime();
+				JSONArray array = new JSONArray();
+				for (SearchHit hit : searchResponse.getHits()) {
+					array.add(toJSONObject(hit.getSource()));
+				}
+				getMetricsListener().onRequest(MetricsListener.PARSE, index, System.nanoTime() - start, 0,
+						array.size(), false);
+
+				JSONObject result = getPageResult(searchResponse, currentPage, pageSize, array);
+
+				if (queryResultCache != null) {
+					return queryResultCache.put(cacheKey, result);
+				}
+				return result;
+			}
+		});
+	}
+
+	/**
+	 * 获取文档列表信息，文档直接绑定为 cls 类型的对象
+	 * 
+	 * @param index
+	 * @param type
+	 * @param currentPage
+	 * @param pageSize
+	 * @param cls
+	 * @param includes    返回的字段，为 null 时返回全部字段
+	 * @param excludes    排除的字段，可为 null
+	 * @param boolQuery
+	 * @param sorts
+	 * @return 与 {@link #query(String, String, int, int, BoolQueryBuilder, SortBuilder...)} 相同的结构，result 为
+	 *         List&lt;T&gt;
+	 */
+	public <T> JSONObject query(String index, String type, int currentPage, int pageSize, Class<T> cls,
+			String[] includes, String[] excludes, BoolQueryBuilder boolQuery, SortBuilder... sorts) {
+
+		SearchResponse searchResponse = searchPage(index, type, currentPage, pageSize, 0, includes, excludes, null,
+				boolQuery, sorts);
+
+		long start = System.nanoTime();
+		List<T> list = new ArrayList<T>(searchResponse.getHits().getHits().length);
+		for (SearchHit hit : searchResponse.getHits()) {
+			list.add(JSON.toJavaObject(new JSONObject(hit.getSource()), cls));
+		}
+		getMetricsListener().onRequest(MetricsListener.PARSE, index, System.nanoTime() - start, 0, list.size(),
+				false);
+
+		return getPageResult(searchResponse, currentPage, pageSize, list);
+	}
+
+	private SearchResponse searchPage(String index, String type, int currentPage, int pageSize, int terminateAfter,
+			String[] includes, String[] excludes, AbstractAggregationBuilder[] aggregations, BoolQueryBuilder boolQuery,
+			SortBuilder... sorts) {
+		return execute(MetricsListener.SEARCH, index, prepareSearchPage(index, type, currentPage, pageSize,
+				terminateAfter, includes, excludes, aggregations, boolQuery, sorts));
+	}
+
+	private SearchRequestBuilder prepareSearchPage(String index, String type, int currentPage, int pageSize,
+			int terminateAfter, String[] includes, String[] excludes, AbstractAggregationBuilder[] aggregations,
+			BoolQueryBuilder boolQuery, SortBuilder... sorts) {
+
+		int offset = PageInfoUtils.getOffset(currentPage, pageSize);
+
+		SearchRequestBuilder searchRequestBuilder = getTransportClient().prepareSearch(index).setTypes(type)
+				.setQuery(boolQuery).setFrom(offset).setSize(pageSize);
+		if (terminateAfter > 0) {
+			searchRequestBuilder.setTerminateAfter(terminateAfter);
+		}
+		if (includes != null || excludes != null) {
+			searchRequestBuilder.setFetchSource(includes, excludes);
+		}
+		if (aggregations != null) {
+			for (AbstractAggregationBuilder aggregation : aggregations) {
+				searchRequestBuilder.addAggregation(aggregation);
+			}
+		}
+
+		for (SortBuilder sort : sorts) {
+			searchRequestBuilder.addSort(sort);
+		}
+		return searchRequestBuilder;
+	}
+
+	/**
+	 * 是否为按 _doc 升序（索引顺序）的排序，提前终止时只有这种排序的结果与不终止时一致
+	 */
+	private static boolean isDocOrder(SortBuilder sort) {
+		try {
+			XContentBuilder builder = XContentFactory.jsonBuilder().startObject();
+			sort.toXContent(builder, ToXContent.EMPTY_PARAMS);
+			builder.endObject();
+			JSONObject json = JSON.parseObject(builder.string());
+			if (json.size() != 1 || !json.containsKey("_doc")) {
+				return false;
+			}
+			JSONObject options = json.getJSONObject("_doc");
+			return options == null || !"desc".equalsIgnoreCase(options.getString("order"));
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * 把 ES 解析好的 _source 包装为 JSONObject，嵌套的 Map 和 List 同样包装为 JSONObject 和 JSONArray，不复制数据
+	 */
+	static JSONObject toJSONObject(Map<String, Object> source) {
+		for (Map.Entry<String, Object> entry : source.entrySet()) {
+			entry.setValue(toJSON(entry.getValue()));
+		}
+		return new JSONObject(source);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Object toJSON(Object value) {
+		if (value instanceof Map && !(value instanceof JSONObject)) {
+			return toJSONObject((Map<String, Object>) value);
+		}
+		if (value instanceof List && !(value instanceof JSONArray)) {
+			List<Object> list = (List<Object>) value;
+			for (int i = 0; i < list.size(); i++) {
+				list.set(i, toJSON(list.get(i)));
+			}
+			return new JSONArray(list);
+		}
+		return value;
+	}
+
+	private JSONObject getPageResult(SearchResponse searchResponse, int currentPage, int pageSize, Object list) {
+		long total = searchResponse.getHits().getTotalHits();
+
+		JSONObject pageInfo = PageInfoUtils.getPageInfo(total, currentPage, pageSize);
+		Boolean terminatedEarly = searchResponse.isTerminatedEarly();
+		pageInfo.put("exact", terminatedEarly == null || !terminatedEarly);
+
+		JSONObject result = new JSONObject();
+		result.put("pageInfo", pageInfo);
+		result.put("result", list);
+		result.put("code", "200");
+		result.put("message", "查询成功");
+		return result;
+	}
+
+	/**
+	 * 分页查询结果缓存，{@link #getQueryCacheMaxEntries()} 大于 0 时启用，</br>
+	 * 本 DAO 的写操作会使所在索引已缓存的结果不再命中；启用后分页查询返回的结果不可修改
+	 * 
+	 * @return 未启用时返回 null
+	 */
+	public synchronized QueryResultCache getQueryResultCache() {
+		if (queryResultCache == null && getQueryCacheMaxEntries() > 0) {
+			queryResultCache = new QueryResultCache(getQueryCacheMaxEntries(), getQueryCacheMaxBytes(),
+					getQueryCacheTtlMillis());
+		}
+		return queryResultCache;
+	}
+
+	/**
+	 * 查询结果缓存的最大条目数，默认为 0 即不启用，子类可覆盖
+	 * 
+	 * @return
+	 */
+	public int getQueryCacheMaxEntries() {
+		return 0;
+	}
+
+	/**
+	 * 查询结果缓存的最大字节数，子类可覆盖
+	 * 
+	 * @return
+	 */
+	public long getQueryCacheMaxBytes() {
+		return 64 * 1024 * 1024;
+	}
+
+	/**
+	 * 查询结果缓存条目的存活时间（毫秒），子类可覆盖
+	 * 
+	 * @return
+	 */
+	public long getQueryCacheTtlMillis() {
+		return 30000;
+	}
+
+	/**
+	 * 获取文档列表，只返回 ES 默认的前 10 条，遍历全部结果请使用 {@link #forEach}、{@link #stream} 或
+	 * {@link #exportNdjson}
+	 * 
+	 * @param index
+	 * @param type
+	 * @param boolQuery
+	 * @param sorts
+	 * @return
+	 */
+	public JSONObject query(String index, String type, BoolQueryBuilder boolQuery, SortBuilder... sorts) {
+
+		SearchRequestBuilder searchRequestBuilder = getTransportClient().prepareSearch(index).setTypes(type)
 				.setQuery(boolQuery);
 
-		SearchResponse searchResponse = searchRequestBuilder.execute().actionGet();
+		for (SortBuilder sort : sorts) {
+			searchRequestBuilder.addSort(sort);
+		}
+		SearchResponse searchResponse = execute(MetricsListener.SEARCH, index, searchRequestBuilder);
+
+		JSONArray array = new JSONArray();
+		for (SearchHit hit : searchResponse.getHits()) {
+			array.add(JSON.parseObject(hit.getSourceAsString()));
+		}
+
+		JSONObject result = new JSONObject();
+		result.put("result", array);
+
+		return result;
+	}
+
+	/**
+	 * 开始一次滚动查询，适用于导出等需要遍历大量结果的场景，</br>
+	 * 后续页通过 {@link #scroll(String, long)} 获取，结束后调用 {@link #clearScroll(String)} 释放资源
+	 * 
+	 * @param index
+	 * @param type
+	 * @param pageSize        每批次返回的文档数（所有分片合计，不是 scan 那样按分片计算）
+	 * @param keepAliveMillis 两次滚动之间上下文保留的时间（毫秒）
+	 * @param boolQuery
+	 * @param sorts           为空时按 _doc 排序，开销最小
+	 * @return pageInfo 中包含 total 和下一批次使用的 scrollId，result 为空时表示已遍历完
+	 */
+	public JSONObject scroll(String index, String type, int pageSize, long keepAliveMillis, BoolQueryBuilder boolQuery,
+			SortBuilder... sorts) {
+
+		SearchRequestBuilder searchRequestBuilder = getTransportClient().prepareSearch(index).setTypes(type)
+				.setQuery(boolQuery).setSize(pageSize).setScroll(TimeValue.timeValueMillis(keepAliveMillis));
+
+		if (sorts.length == 0) {
+			searchRequestBuilder.addSort(SortBuilders.fieldSort("_doc"));
+		}
+		for (SortBuilder sort : sorts) {
+			searchRequestBuilder.addSort(sort);
+		}
+		SearchResponse searchResponse = execute(MetricsListener.SEARCH, index, searchRequestBuilder);
+
+		return getScrollResult(searchResponse, pageSize);
+	}
+
+	/**
+	 * 获取滚动查询的下一批次
+	 * 
+	 * @param scrollId
+	 * @param keepAliveMillis
+	 * @return
+	 */
+	public JSONObject scroll(String scrollId, long keepAliveMillis) {
+		SearchResponse searchResponse = execute(MetricsListener.SCROLL, null, getTransportClient()
+				.prepareSearchScroll(scrollId).setScroll(TimeValue.timeValueMillis(keepAliveMillis)));
+
+		return getScrollResult(searchResponse, searchResponse.getHits().getHits().length);
+	}
+
+	/**
+	 * 释放滚动查询的上下文
+	 * 
+	 * @param scrollId
+	 * @return
+	 */
+	public boolean clearScroll(String scrollId) {
+		try {
+			return getTransportClient().prepareClearScroll().addScrollId(scrollId).execute().actionGet()
+					.isSucceeded();
+		} catch (Exception e) {
+			LOGGER.error(e.getMessage(), e);
+			return false;
+		}
+	}
+
+	private JSONObject getScrollResult(SearchResponse searchResponse, int pageSize) {
+		JSONArray array = new JSONArray();
+		for (SearchHit hit : searchResponse.getHits()) {
+			array.add(JSON.parseObject(hit.getSourceAsString()));
+		}
+
+		JSONObject pageInfo = new JSONObject();
+		pageInfo.put("total", searchResponse.getHits().getTotalHits());
+		pageInfo.put("pageSize", pageSize);
+		pageInfo.put("scrollId", searchResponse.getScrollId());
+
+		JSONObject result = new JSONObject();
+		result.put("pageInfo", pageInfo);
+		result.put("result", array);
+		result.put("code", "200");
+		result.put("message", "查询成功");
+
+		return result;
+	}
+
+	/**
+	 * 以滚动查询遍历全部结果，返回的迭代器在遍历时才逐批查询和解析，</br>
+	 * 未遍历完时需调用 {@link ScrollHitIterator#close()} 释放滚动上下文
+	 * 
+	 * @param index
+	 * @param type
+	 * @param batchSize 每批次返回的文档数（所有分片合计，不是 scan 那样按分片计算）
+	 * @param boolQuery
+	 * @param sorts     为空时按 _doc 排序
+	 * @return
+	 */
+	public ScrollHitIterator scrollHits(String index, String type, int batchSize, BoolQueryBuilder boolQuery,
+			SortBuilder... sorts) {
+		SearchRequestBuilder searchRequestBuilder = getTransportClient().prepareSearch(index).setTypes(type)
+				.setQuery(boolQuery).setSize(batchSize);
+
+		if (sorts.length == 0) {
+			searchRequestBuilder.addSort(SortBuilders.fieldSort("_doc"));
+		}
+		for (SortBuilder sort : sorts) {
+			searchRequestBuilder.addSort(sort);
+		}
+		return new ScrollHitIterator(getTransportClient(), searchRequestBuilder, getScrollKeepAliveMillis(),
+				getMetricsListener(), index);
+	}
+
+	/**
+	 * 以流的方式遍历全部结果，文档在消费时才解析，使用完毕后需关闭流
+	 * 
+	 * @param index
+	 * @param type
+	 * @param batchSize
+	 * @param boolQuery
+	 * @param sorts
+	 * @return
+	 */
+	public Stream<JSONObject> stream(String index, String type, int batchSize, BoolQueryBuilder boolQuery,
+			SortBuilder... sorts) {
+		final ScrollHitIterator iterator = scrollHits(index, type, batchSize, boolQuery, sorts);
+
+		return StreamSupport
+				.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.map(new Function<SearchHit, JSONObject>() {
+
+					@Override
+					public JSONObject apply(SearchHit hit) {
+						return JSON.parseObject(hit.getSourceAsString());
+					}
+				}).onClose(new Runnable() {
+
+					@Override
+					public void run() {
+						iterator.close();
+					}
+				});
+	}
+
+	/**
+	 * 遍历全部结果，逐条交给 consumer 处理
+	 * 
+	 * @param index
+	 * @param type
+	 * @param batchSize
+	 * @param boolQuery
+	 * @param consumer
+	 * @param sorts
+	 * @return 处理的文档数
+	 */
+	public long forEach(String index, String type, int batchSize, BoolQueryBuilder boolQuery,
+			Consumer<JSONObject> consumer, SortBuilder... sorts) {
+		long count = 0;
+		ScrollHitIterator iterator = scrollHits(index, type, batchSize, boolQuery, sorts);
+		try {
+			while (iterator.hasNext()) {
+				consumer.accept(JSON.parseObject(iterator.next().getSourceAsString()));
+				count++;
+			}
+		} finally {
+			iterator.close();
+		}
+		return count;
+	}
+
+	/**
+	 * 将全部结果以 NDJSON（每行一个文档）写入输出流，直接写出 _source 原始字节，不经过解析
+	 * 
+	 * @param index
+	 * @param type
+	 * @param batchSize
+	 * @param boolQuery
+	 * @param out       调用方负责关闭
+	 * @param sorts
+	 * @return 写出的文档数
+	 * @throws IOException
+	 */
+	public long exportNdjson(String index, String type, int batchSize, BoolQueryBuilder boolQuery, OutputStream out,
+			SortBuilder... sorts) throws IOException {
+		long count = 0;
+		ScrollHitIterator iterator = scrollHits(index, type, batchSize, boolQuery, sorts);
+		try {
+			while (iterator.hasNext()) {
+				BytesReference source = iterator.next().sourceRef();
+				if (source == null) {
+					continue;
+				}
+				if (containsNewLine(source)) {
+					// 原始 _source 是多行格式时重新序列化为单行
+					out.write(JSON.toJSONString(JSON.parse(source.toUtf8())).getBytes(StandardCharsets.UTF_8));
+				} else {
+					source.writeTo(out);
+				}
+				out.write('\n');
+				count++;
+			}
+		} finally {
+			iterator.close();
+		}
+		out.flush();
+		return count;
+	}
+
+	/**
+	 * 将全部结果以 NDJSON 写入文件，文件已存在时覆盖
+	 * 
+	 * @param index
+	 * @param type
+	 * @param batchSize
+	 * @param boolQuery
+	 * @param file
+	 * @param sorts
+	 * @return 写出的文档数
+	 * @throws IOException
+	 */
+	public long exportNdjson(String index, String type, int batchSize, BoolQueryBuilder boolQuery, File file,
+			SortBuilder... sorts) throws IOException {
+		FileUtils.creatIfNeed(file.getAbsolutePath());
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024);
+		try {
+			return exportNdjson(index, type, batchSize, boolQuery, out, sorts);
+		} finally {
+			out.close();
+		}
+	}
+
+	private boolean containsNewLine(BytesReference source) {
+		for (int i = 0; i < source.length(); i++) {
+			if (source.get(i) == '\n') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 遍历全部结果时两个批次之间滚动上下文保留的时间（毫秒），子类可覆盖
+	 * 
+	 * @return
+	 */
+	public long getScrollKeepAliveMillis() {
+		return 60000;
+	}
+
+	/**
+	 * 基于排序值游标的翻页，用于界面上的“下一页”，无论翻到多深，每个分片都只收集 pageSize 条文档
+	 * 
+	 * 按 sortField 和 {@link #getCursorTieBreaker()} 排序，上一页返回的 cursor 作为下一页的入参；</br>
+	 * sortField 缺失的文档不会出现在第二页及以后
+	 * 
+	 * @param index
+	 * @param type
+	 * @param pageSize
+	 * @param sortField 排序字段，为空时只按 {@link #getCursorTieBreaker()} 排序
+	 * @param order
+	 * @param cursor    上一页返回的游标，第一页传 null
+	 * @param boolQuery
+	 * @return pageInfo 中包含 remaining（含当前页在内剩余的文档数）和下一页的 cursor，最后一页时 cursor 为 null
+	 */
+	public JSONObject queryAfter(String index, String type, int pageSize, String sortField, SortOrder order,
+			JSONArray cursor, BoolQueryBuilder boolQuery) {
+
+		String tieBreaker = getCursorTieBreaker();
+		if (sortField != null && sortField.equals(tieBreaker)) {
+			sortField = null;
+		}
+
+		BoolQueryBuilder query = QueryBuilders.boolQuery();
+		if (boolQuery != null) {
+			query.must(boolQuery);
+		}
+		if (cursor != null && !cursor.isEmpty()) {
+			query.filter(getCursorQuery(sortField, tieBreaker, order, cursor));
+		}
+
+		SearchRequestBuilder searchRequestBuilder = getTransportClient().prepareSearch(index).setTypes(type)
+				.setQuery(query).setSize(pageSize);
+		if (sortField != null) {
+			searchRequestBuilder.addSort(sortField, order);
+		}
+		searchRequestBuilder.addSort(tieBreaker, order);
+
+		SearchResponse searchResponse = execute(MetricsListener.SEARCH, index, searchRequestBuilder);
+
+		JSONArray array = new JSONArray();
+		SearchHit last = null;
+		for (SearchHit hit : searchResponse.getHits()) {
+			array.add(JSON.parseObject(hit.getSourceAsString()));
+			last = hit;
+		}
+
+		JSONArray next = null;
+		if (last != null && array.size() == pageSize) {
+			next = new JSONArray();
+			for (Object value : last.getSortValues()) {
+				next.add(value instanceof BytesRef ? ((BytesRef) value).utf8ToString()
+						: (value instanceof Text ? value.toString() : value));
+			}
+		}
+
+		JSONObject pageInfo = new JSONObject();
+		pageInfo.put("remaining", searchResponse.getHits().getTotalHits());
+		pageInfo.put("pageSize", pageSize);
+		pageInfo.put("cursor", next);
+
+		JSONObject result = new JSONObject();
+		result.put("pageInfo", pageInfo);
+		result.put("result", array);
+		result.put("code", "200");
+		result.put("message", "查询成功");
+
+		return result;
+	}
+
+	/**
+	 * 生成“排在游标之后”的过滤条件
+	 * 
+	 * @param sortField
+	 * @param tieBreaker
+	 * @param order
+	 * @param cursor
+	 * @return
+	 */
+	private QueryBuilder getCursorQuery(String sortField, String tieBreaker, SortOrder order, JSONArray cursor) {
+		boolean asc = order != SortOrder.DESC;
+		Object lastId = cursor.get(cursor.size() - 1);
+		RangeQueryBuilder afterId = asc ? QueryBuilders.rangeQuery(tieBreaker).gt(lastId)
+				: QueryBuilders.rangeQuery(tieBreaker).lt(lastId);
+		if (sortField == null || cursor.size() < 2) {
+			return afterId;
+		}
+
+		Object lastValue = cursor.get(0);
+		RangeQueryBuilder afterValue = asc ? QueryBuilders.rangeQuery(sortField).gt(lastValue)
+				: QueryBuilders.rangeQuery(sortField).lt(lastValue);
+		return QueryBuilders.boolQuery().should(afterValue)
+				.should(QueryBuilders.boolQuery().must(QueryBuilders.termQuery(sortField, lastValue)).must(afterId))
+				.minimumNumberShouldMatch(1);
+	}
+
+	/**
+	 * 游标翻页时保证排序唯一的字段，需为不分词且值唯一，默认为 id，子类可覆盖
+	 * 
+	 * @return
+	 */
+	public String getCursorTieBreaker() {
+		return "id";
+	}
+
+	/**
+	 * 根据 id 获取文档，使用实时 GET 直接路由到文档所在分片；</br>
+	 * 文档的 _id 与 id 字段不一致时（如 {@link #addDocuments(JSONArray)} 写入的已带 id 的文档），按 id 字段精确查询
+	 * 
+	 * @param index
+	 * @param type
+	 * @param id
+	 * @return result 为文档内容，未找到时为空对象
+	 */
+	public JSONObject queryById(final String index, final String type, final String id) {
+		if (!isReadCoalescingEnabled()) {
+			return loadById(index, type, id);
+		}
+		return coalesce(QueryResultCache.getKey(index, type, id), new Callable<JSONObject>() {
+
+			@Override
+			public JSONObject call() {
+				return loadById(index, type, id);
+			}
+		});
+	}
+
+	private JSONObject loadById(String index, String type, String id) {
+		LocalCache<String> documentCache = getDocumentCache();
+		String key = getDocumentCacheKey(index, type, id);
+		long stamp = 0;
+		String source = null;
+		if (documentCache != null) {
+			stamp = documentCache.stamp();
+			source = documentCache.get(key);
+		}
+
+		if (source == null) {
+			GetResponse getResponse;
+			if (getGetBatchWindowMillis() > 0) {
+				getResponse = ActionFutures.join(getGetBatcher().get(index, type, id));
+			} else {
+				getResponse = execute(MetricsListener.GET, index, getTransportClient().prepareGet(index, type, id));
+			}
+			if (getResponse.isExists()) {
+				source = getResponse.getSourceAsString();
+				if (documentCache != null) {
+					documentCache.put(key, source, stamp);
+				}
+			} else {
+				// 按 id 字段找到的文档 _id 与请求的 id 不同，写操作按 _id 失效缓存，因此不缓存
+				SearchResponse searchResponse = execute(MetricsListener.SEARCH, index, getTransportClient()
+						.prepareSearch(index).setTypes(type).setQuery(QueryBuilders.termQuery("id", id)).setSize(1));
+				for (SearchHit hit : searchResponse.getHits()) {
+					source = hit.getSourceAsString();
+				}
+			}
+		}
+
+		return getByIdResult(source);
+	}
+
+	/**
+	 * 根据 id 获取文档，只返回指定的字段，不经过文档缓存
+	 * 
+	 * @param index
+	 * @param type
+	 * @param id
+	 * @param includes 返回的字段，为 null 时返回全部字段
+	 * @param excludes 排除的字段，可为 null
+	 * @return result 为文档内容，未找到时为空对象
+	 */
+	public JSONObject queryById(String index, String type, String id, String[] includes, String[] excludes) {
+
+		GetResponse getResponse = execute(MetricsListener.GET, index,
+				getTransportClient().prepareGet(index, type, id).setFetchSource(includes, excludes));
 
 		JSONObject obj = new JSONObject();
-		for (SearchHit hit : searchResponse.getHits()) {
-			obj = JSON.parseObject(hit.getSourceAsString());
-			break;
+		if (getResponse.isExists()) {
+			obj = toJSONObject(getResponse.getSource());
+		} else {
+			SearchResponse searchResponse = execute(MetricsListener.SEARCH, index,
+					getTransportClient().prepareSearch(index).setTypes(type).setQuery(QueryBuilders.termQuery("id", id))
+							.setFetchSource(includes, excludes).setSize(1));
+			for (SearchHit hit : searchResponse.getHits()) {
+				obj = toJSONObject(hit.getSource());
+			}
 		}
 
 		JSONObject result = new JSONObject();
@@ -207,4 +1557,552 @@ public abstract class AbstractESDaoImpl {
 		return result;
 	}
 
+	/**
+	 * 是否合并并发的相同读请求（{@link #queryById(String, String, String)} 和分页查询），默认不合并，子类可覆盖
+	 * 
+	 * 开启后同时到达的相同请求只向 ES 发送一次，所有调用方共享同一个结果对象，调用方不应修改返回值
+	 * 
+	 * @return
+	 */
+	public boolean isReadCoalescingEnabled() {
+		return false;
+	}
+
+	/**
+	 * 将该时间窗口（毫秒）内并发的 {@link #queryById(String, String, String)} 合并为一次 multi-get，</br>
+	 * 小于等于 0 表示不合并，子类可覆盖
+	 * 
+	 * @return
+	 */
+	public long getGetBatchWindowMillis() {
+		return 0;
+	}
+
+	/**
+	 * 合并为一次 multi-get 的最大文档数，子类可覆盖
+	 * 
+	 * @return
+	 */
+	public int getGetBatchSize() {
+		return 100;
+	}
+
+	public synchronized SingleFlight<JSONObject> getReadSingleFlight() {
+		if (readSingleFlight == null) {
+			readSingleFlight = new SingleFlight<JSONObject>();
+		}
+		return readSingleFlight;
+	}
+
+	/**
+	 * 合并获取，窗口和批次大小每次使用时从 {@link #getGetBatchWindowMillis()}、{@link #getGetBatchSize()} 读取，</br>
+	 * 请求经 {@link #executeAsync} 发出，同样记录指标和慢查询
+	 * 
+	 * @return
+	 */
+	public synchronized GetBatcher getGetBatcher() {
+		if (getBatcher == null) {
+			getBatcher = new GetBatcher(getTransportClient(), getGetBatchWindowMillis(), getGetBatchSize(),
+					getMetricsListener()) {
+
+				@Override
+				protected long getWindowMillis() {
+					return getGetBatchWindowMillis();
+				}
+
+				@Override
+				protected int getMaxBatchSize() {
+					return getGetBatchSize();
+				}
+
+				@Override
+				protected CompletableFuture<MultiGetResponse> execute(String index, MultiGetRequestBuilder builder) {
+					return executeAsync(MetricsListener.MGET, index, builder);
+				}
+			};
+		}
+		return getBatcher;
+	}
+
+	/**
+	 * 关闭合并获取，提交尚未发出的请求，之后再使用时重新创建
+	 */
+	public synchronized void closeGetBatcher() {
+		if (getBatcher != null) {
+			getBatcher.close();
+			getBatcher = null;
+		}
+	}
+
+	private JSONObject coalesce(String key, Callable<JSONObject> loader) {
+		if (isReadCoalescingEnabled()) {
+			return getReadSingleFlight().execute(key, loader);
+		}
+		try {
+			return loader.call();
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * 文档本地缓存，{@link #getDocumentCacheMaxEntries()} 大于 0 时启用，</br>
+	 * {@link #queryById(String, String, String)} 优先从缓存读取，本 DAO 的写操作完成后自动失效；</br>
+	 * 只缓存按 _id 取到的文档，按 id 字段查询到的文档不缓存
+	 * 
+	 * @return 未启用时返回 null
+	 */
+	public synchronized LocalCache<String> getDocumentCache() {
+		if (documentCache == null && getDocumentCacheMaxEntries() > 0) {
+			documentCache = new LocalCache<String>(getDocumentCacheMaxEntries(), getDocumentCacheMaxBytes(),
+					getDocumentCacheTtlMillis());
+		}
+		return documentCache;
+	}
+
+	/**
+	 * 文档缓存的最大条目数，默认为 0 即不启用，子类可覆盖
+	 * 
+	 * @return
+	 */
+	public int getDocumentCacheMaxEntries() {
+		return 0;
+	}
+
+	/**
+	 * 文档缓存的最大字节数，子类可覆盖
+	 * 
+	 * @return
+	 */
+	public long getDocumentCacheMaxBytes() {
+		return 64 * 1024 * 1024;
+	}
+
+	/**
+	 * 文档缓存条目的存活时间（毫秒），子类可覆盖
+	 * 
+	 * @return
+	 */
+	public long getDocumentCacheTtlMillis() {
+		return 60000;
+	}
+
+	private String getDocumentCacheKey(String index, String type, String id) {
+		return index + "/" + type + "/" + id;
+	}
+
+	/**
+	 * 根据多个 id 批量获取当前 DAO 索引和类型下的文档
+	 * 
+	 * @param ids
+	 * @return
+	 * @see #queryByIds(String, String, Collection)
+	 */
+	public JSONObject queryByIds(Collection<String> ids) {
+		return queryByIds(getIndex(), getType(), ids);
+	}
+
+	/**
+	 * 根据多个 id 批量获取文档，一次 multi-get 请求取回全部文档，</br>
+	 * _id 未命中的再按 id 字段合并为一次查询
+	 * 
+	 * @param index
+	 * @param type
+	 * @param ids
+	 * @return result 与 ids 顺序一致，未找到的位置为 null；missing 为未找到的 id 列表，重复的 id 只列出一次
+	 */
+	public JSONObject queryByIds(String index, String type, Collection<String> ids) {
+
+		JSONArray array = new JSONArray();
+		JSONArray missing = new JSONArray();
+
+		if (!ids.isEmpty()) {
+			MultiGetRequestBuilder multiGetRequestBuilder = getTransportClient().prepareMultiGet();
+			for (String id : ids) {
+				multiGetRequestBuilder.add(index, type, id);
+			}
+			MultiGetResponse multiGetResponse = execute(MetricsListener.MGET, index, multiGetRequestBuilder);
+
+			// 同一个 id 可能出现多次，记录它的所有位置
+			Map<String, List<Integer>> positions = new LinkedHashMap<String, List<Integer>>();
+			for (MultiGetItemResponse item : multiGetResponse.getResponses()) {
+				if (!item.isFailed() && item.getResponse().isExists()) {
+					array.add(JSON.parseObject(item.getResponse().getSourceAsString()));
+				} else {
+					if (item.isFailed()) {
+						LOGGER.warn("获取文档失败，id：{}，{}", item.getId(), item.getFailure().getMessage());
+					}
+					List<Integer> list = positions.get(item.getId());
+					if (list == null) {
+						list = new ArrayList<Integer>();
+						positions.put(item.getId(), list);
+					}
+					list.add(array.size());
+					array.add(null);
+				}
+			}
+
+			if (!positions.isEmpty()) {
+				SearchResponse searchResponse = execute(MetricsListener.SEARCH, index,
+						getTransportClient().prepareSearch(index).setTypes(type)
+								.setQuery(QueryBuilders.termsQuery("id", positions.keySet())).setSize(positions.size()));
+				for (SearchHit hit : searchResponse.getHits()) {
+					String source = hit.getSourceAsString();
+					List<Integer> list = positions.remove(JSON.parseObject(source).getString("id"));
+					if (list != null) {
+						// 每个位置各自解析一份，避免序列化时出现 $ref 引用
+						for (Integer position : list) {
+							array.set(position, JSON.parseObject(source));
+						}
+					}
+				}
+				missing.addAll(positions.keySet());
+			}
+		}
+
+		JSONObject result = new JSONObject();
+		result.put("result", array);
+		result.put("missing", missing);
+
+		return result;
+	}
+
+	/**
+	 * 异步调用的超时（毫秒），超时后返回的 future 以 {@link java.util.concurrent.TimeoutException} 结束，</br>
+	 * 小于等于 0 表示不限时，子类可覆盖
+	 * 
+	 * @return
+	 */
+	public long getAsyncTimeoutMillis() {
+		return 0;
+	}
+
+	/**
+	 * 异步调用中解析文档等耗时步骤使用的线程池，避免占用 ES 客户端的网络线程，子类可覆盖
+	 * 
+	 * @return
+	 */
+	public Executor getAsyncExecutor() {
+		return ForkJoinPool.commonPool();
+	}
+
+	/**
+	 * 异步执行请求并记录指标，与 {@link #execute} 一样记录慢查询
+	 * 
+	 * @param operation
+	 * @param index
+	 * @param builder
+	 * @return
+	 */
+	protected <Response extends ActionResponse> CompletableFuture<Response> executeAsync(final String operation,
+			final String index, final ActionRequestBuilder<?, Response, ?> builder) {
+		final long threshold = getSlowQueryThresholdMillis();
+		if (threshold <= 0) {
+			return ActionFutures.execute(getMetricsListener(), operation, index, builder);
+		}
+
+		SearchSourceBuilder profiled = enableProfile(builder);
+		final long start = System.nanoTime();
+		CompletableFuture<Response> future;
+		try {
+			// 发出请求时查询已序列化，之后即可恢复 builder
+			future = ActionFutures.execute(getMetricsListener(), operation, index, builder);
+		} finally {
+			disableProfile(profiled);
+		}
+		future.whenComplete(new BiConsumer<Response, Throwable>() {
+
+			@Override
+			public void accept(Response response, Throwable failure) {
+				if (failure == null) {
+					recordSlowQuery(operation, index, builder, response, System.nanoTime() - start, threshold);
+				}
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * 返回给调用方的 future，超时或被取消时不影响内部的后续处理（如写入后使缓存失效）
+	 */
+	private <T> CompletableFuture<T> expose(CompletableFuture<T> internal) {
+		final CompletableFuture<T> exposed = new CompletableFuture<T>();
+		internal.whenComplete(new BiConsumer<T, Throwable>() {
+
+			@Override
+			public void accept(T value, Throwable failure) {
+				if (failure != null) {
+					exposed.completeExceptionally(failure);
+				} else {
+					exposed.complete(value);
+				}
+			}
+		});
+		return ActionFutures.withTimeout(exposed, getAsyncTimeoutMillis());
+	}
+
+	/**
+	 * 异步添加文档，不占用调用线程
+	 * 
+	 * @param id
+	 * @param document
+	 * @return
+	 */
+	public CompletableFuture<Boolean> addDocumentAsync(String id, JSONObject document) {
+		return addDocumentAsync(id, document, getRefreshPolicy());
+	}
+
+	/**
+	 * 异步添加文档
+	 * 
+	 * 取消或超时只是不再等待，文档可能已经写入，写入完成后仍会使缓存失效
+	 * 
+	 * @param id
+	 * @param document
+	 * @param refreshPolicy 刷新策略
+	 * @return
+	 */
+	public CompletableFuture<Boolean> addDocumentAsync(final String id, JSONObject document,
+			final RefreshPolicy refreshPolicy) {
+		if (!document.containsKey("id")) {
+			document.put("id", id);
+		}
+
+		return expose(executeAsync(MetricsListener.INDEX, getIndex(),
+				getTransportClient().prepareIndex(getIndex(), getType(), id).setSource(document)
+						.setRefresh(refreshPolicy == RefreshPolicy.IMMEDIATE))
+				.thenApply(new Function<IndexResponse, Boolean>() {
+
+					@Override
+					public Boolean apply(IndexResponse response) {
+						afterWrite(id, refreshPolicy);
+						return true;
+					}
+				}));
+	}
+
+	/**
+	 * 异步删除文档
+	 * 
+	 * @param id
+	 * @return
+	 */
+	public CompletableFuture<Boolean> deleteDocumentAsync(String id) {
+		return deleteDocumentAsync(id, getRefreshPolicy());
+	}
+
+	/**
+	 * 异步删除文档
+	 * 
+	 * @param id
+	 * @param refreshPolicy 刷新策略
+	 * @return 文档存在并已删除时为 true
+	 */
+	public CompletableFuture<Boolean> deleteDocumentAsync(final String id, final RefreshPolicy refreshPolicy) {
+		return expose(executeAsync(MetricsListener.DELETE, getIndex(),
+				getTransportClient().prepareDelete().setRefresh(refreshPolicy == RefreshPolicy.IMMEDIATE)
+						.setIndex(getIndex()).setType(getType()).setId(id))
+				.thenApply(new Function<DeleteResponse, Boolean>() {
+
+					@Override
+					public Boolean apply(DeleteResponse response) {
+						afterWrite(id, refreshPolicy);
+						return response.isFound();
+					}
+				}));
+	}
+
+	/**
+	 * 异步修改文档
+	 * 
+	 * @param id
+	 * @param namesAndValues 新的字段和值
+	 * @return
+	 */
+	public CompletableFuture<Boolean> updateDocumentAsync(String id, JSONObject namesAndValues) {
+		return updateDocumentAsync(id, namesAndValues, getRefreshPolicy());
+	}
+
+	/**
+	 * 异步修改文档
+	 * 
+	 * @param id
+	 * @param namesAndValues 新的字段和值
+	 * @param refreshPolicy  刷新策略
+	 * @return 修改成功时为 true；请求失败时以异常结束，与同步的 updateDocument 一样仍会使缓存失效，</br>
+	 *         部分生效的修改不会留下旧的缓存
+	 */
+	public CompletableFuture<Boolean> updateDocumentAsync(final String id, JSONObject namesAndValues,
+			final RefreshPolicy refreshPolicy) {
+		BulkRequestBuilder builder = getTransportClient().prepareBulk()
+				.setRefresh(refreshPolicy == RefreshPolicy.IMMEDIATE);
+		builder.add(new UpdateRequest(getIndex(), getType(), id).doc(namesAndValues));
+
+		return expose(executeAsync(MetricsListener.UPDATE, getIndex(), builder)
+				.whenComplete(new BiConsumer<BulkResponse, Throwable>() {
+
+					@Override
+					public void accept(BulkResponse response, Throwable failure) {
+						afterWrite(id, refreshPolicy);
+					}
+				}).thenApply(new Function<BulkResponse, Boolean>() {
+
+					@Override
+					public Boolean apply(BulkResponse response) {
+						if (response.hasFailures()) {
+							LOGGER.error(response.buildFailureMessage());
+						}
+						return !response.hasFailures();
+					}
+				}));
+	}
+
+	/**
+	 * 异步统计文档数量
+	 * 
+	 * @param index
+	 * @param type
+	 * @param boolQuery
+	 * @return
+	 */
+	@SuppressWarnings("deprecation")
+	public CompletableFuture<Long> countAsync(String index, String type, BoolQueryBuilder boolQuery) {
+		return expose(executeAsync(MetricsListener.COUNT, index,
+				getTransportClient().prepareCount(index).setTypes(type).setQuery(boolQuery))
+				.thenApply(new Function<CountResponse, Long>() {
+
+					@Override
+					public Long apply(CountResponse response) {
+						return response.getCount();
+					}
+				}));
+	}
+
+	/**
+	 * 异步获取文档列表信息，结果与 {@link #query(String, String, int, int, BoolQueryBuilder, SortBuilder...)} 相同
+	 * 
+	 * 命中查询结果缓存时直接返回已完成的 future；文档解析在 {@link #getAsyncExecutor()} 中进行。</br>
+	 * 只有这一个 query 重载有异步版本，指定 terminateAfter、返回字段或聚合的查询仍需使用同步的 query
+	 * 
+	 * @param index
+	 * @param type
+	 * @param currentPage
+	 * @param pageSize
+	 * @param boolQuery
+	 * @param sorts
+	 * @return
+	 */
+	public CompletableFuture<JSONObject> queryAsync(final String index, String type, final int currentPage,
+			final int pageSize, BoolQueryBuilder boolQuery, SortBuilder... sorts) {
+
+		final QueryResultCache queryResultCache = getQueryResultCache();
+		String key = null;
+		if (queryResultCache != null) {
+			key = QueryResultCache.getKey(index, type, currentPage, pageSize, 0, null, null, boolQuery, sorts);
+			JSONObject cached = queryResultCache.get(key);
+			if (cached != null) {
+				return CompletableFuture.completedFuture(cached);
+			}
+		}
+
+		final String cacheKey = key;
+		return expose(executeAsync(MetricsListener.SEARCH, index,
+				prepareSearchPage(index, type, currentPage, pageSize, 0, null, null, null, boolQuery, sorts))
+				.thenApplyAsync(new Function<SearchResponse, JSONObject>() {
+
+					@Override
+					public JSONObject apply(SearchResponse searchResponse) {
+						long start = System.nanoTime();
+						JSONArray array = new JSONArray();
+						for (SearchHit hit : searchResponse.getHits()) {
+							array.add(JSON.parseObject(hit.getSourceAsString()));
+						}
+						getMetricsListener().onRequest(MetricsListener.PARSE, index, System.nanoTime() - start, 0,
+								array.size(), false);
+
+						JSONObject result = getPageResult(searchResponse, currentPage, pageSize, array);
+						if (queryResultCache != null) {
+							return queryResultCache.put(cacheKey, result);
+						}
+						return result;
+					}
+				}, getAsyncExecutor()));
+	}
+
+	/**
+	 * 异步根据 id 获取文档，结果与 {@link #queryById(String, String, String)} 相同
+	 * 
+	 * 文档不存在时再按 id 字段查询一次；返回的 future 已取消或超时时不再发起这次查询
+	 * 
+	 * @param index
+	 * @param type
+	 * @param id
+	 * @return
+	 */
+	public CompletableFuture<JSONObject> queryByIdAsync(final String index, final String type, final String id) {
+		final LocalCache<String> documentCache = getDocumentCache();
+		final String key = getDocumentCacheKey(index, type, id);
+		final long stamp = documentCache == null ? 0 : documentCache.stamp();
+		if (documentCache != null) {
+			String source = documentCache.get(key);
+			if (source != null) {
+				return CompletableFuture.completedFuture(getByIdResult(source));
+			}
+		}
+
+		final CompletableFuture<JSONObject> result = ActionFutures.withTimeout(new CompletableFuture<JSONObject>(),
+				getAsyncTimeoutMillis());
+		executeAsync(MetricsListener.GET, index, getTransportClient().prepareGet(index, type, id))
+				.whenComplete(new BiConsumer<GetResponse, Throwable>() {
+
+					@Override
+					public void accept(GetResponse getResponse, Throwable failure) {
+						if (failure != null) {
+							result.completeExceptionally(failure);
+						} else if (getResponse.isExists()) {
+							if (documentCache != null) {
+								documentCache.put(key, getResponse.getSourceAsString(), stamp);
+							}
+							completeById(result, getResponse.getSourceAsString());
+						} else if (!result.isDone()) {
+							executeAsync(MetricsListener.SEARCH, index,
+									getTransportClient().prepareSearch(index).setTypes(type)
+											.setQuery(QueryBuilders.termQuery("id", id)).setSize(1))
+									.whenComplete(new BiConsumer<SearchResponse, Throwable>() {
+
+										@Override
+										public void accept(SearchResponse searchResponse, Throwable failure) {
+											if (failure != null) {
+												result.completeExceptionally(failure);
+												return;
+											}
+											String source = null;
+											for (SearchHit hit : searchResponse.getHits()) {
+												source = hit.getSourceAsString();
+											}
+											completeById(result, source);
+										}
+									});
+						}
+					}
+				});
+		return result;
+	}
+
+	private void completeById(CompletableFuture<JSONObject> result, String source) {
+		try {
+			result.complete(getByIdResult(source));
+		} catch (RuntimeException e) {
+			result.completeExceptionally(e);
+		}
+	}
+
+	private JSONObject getByIdResult(String source) {
+		JSONObject result = new JSONObject();
+		result.put("result", source == null ? new JSONObject() : JSON.parseObject(source));
+		return result;
+	}
+
 }
@@ -2,6 +2,23 @@ package teclan.es;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,11 +28,8 @@ import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 
 import okhttp3.MediaType;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.RequestBody;
-import okhttp3.Response;
 import teclan.es.utils.FileUtils;
+import teclan.es.utils.JsonArrayReader;
 
 /**
  * 用于初始化ES索引和字典
@@ -27,7 +41,12 @@ public abstract class AbstractElasticsearchFactory {
 	private static final Logger LOGGER = LoggerFactory.getLogger(AbstractElasticsearchFactory.class);
 	public static final MediaType mediaType = MediaType.parse("application/json; charset=utf-8");
 
-	private OkHttpClient client = new OkHttpClient();
+	/**
+	 * 映射的 _meta 中记录索引定义摘要的键
+	 */
+	private static final String INDEX_VERSION = "index_version";
+
+	private EsHttpClient httpClient;
 	private Class<?> cls = null;
 	/**
 	 * json文件的目录
@@ -154,9 +173,13 @@ public abstract class AbstractElasticsearchFactory {
 				LOGGER.warn("未找到创建索引相关的文件,目录：{}", dir);
 			} else {
 				File[] indexJsonFiles = dir.listFiles();
-				for (File file : indexJsonFiles) {
-					createIndex(file);
-				}
+				runInParallel(indexJsonFiles, "索引检查完成：{}", new Function<File, JSONObject>() {
+
+					@Override
+					public JSONObject apply(File file) {
+						return createIndex(file);
+					}
+				});
 			}
 		} catch (Exception e) {
 			LOGGER.error("创建索引错误，在classPath中未发现路径:{}", jsonDir + "/indexs");
@@ -173,8 +196,34 @@ public abstract class AbstractElasticsearchFactory {
 				LOGGER.warn("为找到创建索引相关的文件,目录：{}", dir);
 			} else {
 				File[] dataJsonFiles = dir.listFiles();
-				for (File file : dataJsonFiles) {
-					createIndexData(file);
+				Map<String, BulkLoadSession> sessions = new HashMap<String, BulkLoadSession>();
+				if (isSeedBulkLoadProfile()) {
+					for (File file : dataJsonFiles) {
+						String indexName = file.getName().substring(0, file.getName().lastIndexOf(".")).split("__")[1];
+						if (!sessions.containsKey(indexName)) {
+							BulkLoadSession session = new BulkLoadSession(getHttpClient(), indexName,
+									getSeedMaxNumSegments(), getSeedGreenTimeoutMillis());
+							try {
+								session.open();
+								sessions.put(indexName, session);
+							} catch (Exception e) {
+								LOGGER.warn(String.format("索引 %s 切换到批量导入设置失败，按原设置导入", indexName), e);
+							}
+						}
+					}
+				}
+				try {
+					runInParallel(dataJsonFiles, "索引数据创建完成：{}", new Function<File, JSONObject>() {
+
+						@Override
+						public JSONObject apply(File file) {
+							return createIndexData(file);
+						}
+					});
+				} finally {
+					for (BulkLoadSession session : sessions.values()) {
+						session.close();
+					}
 				}
 			}
 		} catch (Exception e) {
@@ -182,45 +231,709 @@ public abstract class AbstractElasticsearchFactory {
 		}
 	}
 
-	private void createIndex(File file) {
+	/**
+	 * 导入默认数据时是否临时关闭自动刷新并将副本数设为 0，导入完成后恢复，</br>
+	 * 默认为 false，只建议在初始化空集群时开启，子类可覆盖
+	 * 
+	 * @return
+	 */
+	public boolean isSeedBulkLoadProfile() {
+		return false;
+	}
+
+	/**
+	 * 开启 {@link #isSeedBulkLoadProfile()} 时，导入后强制合并到的段数，默认为 0 即不合并，子类可覆盖
+	 * 
+	 * @return
+	 */
+	public int getSeedMaxNumSegments() {
+		return 0;
+	}
+
+	/**
+	 * 开启 {@link #isSeedBulkLoadProfile()} 时，导入后等待索引恢复为 green 的时间（毫秒），子类可覆盖
+	 * 
+	 * @return
+	 */
+	public long getSeedGreenTimeoutMillis() {
+		return 5 * 60 * 1000L;
+	}
+
+	/**
+	 * 在最多 {@link #getSeedThreads()} 个线程中并行处理文件，全部完成后返回
+	 * 
+	 * @param files
+	 * @param message 每个文件完成时的日志，参数为处理结果
+	 * @param task
+	 */
+	private void runInParallel(File[] files, String message, final Function<File, JSONObject> task) {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(getSeedThreads(), files.length)));
+		try {
+			List<Future<JSONObject>> reports = new ArrayList<Future<JSONObject>>();
+			for (final File file : files) {
+				reports.add(executor.submit(new Callable<JSONObject>() {
+
+					@Override
+					public JSONObject call() throws Exception {
+						return task.apply(file);
+					}
+				}));
+			}
+			for (Future<JSONObject> report : reports) {
+				try {
+					LOGGER.info(message, report.get());
+				} catch (ExecutionException e) {
+					LOGGER.error(e.getMessage(), e.getCause());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * 按需创建索引
+	 * 
+	 * 启用别名时（{@link #isIndexAliasEnabled()}），实际索引名为 [索引名称]_[索引定义摘要]，</br>
+	 * [索引名称] 作为指向它的别名：</br>
+	 * 实际索引已存在时只确认别名；索引定义有变化时创建新的实际索引，迁移过程见 {@link #migrate(String, String, String)}，</br>
+	 * 切换后按 {@link #getRetainedIndices()} 删除更早的实际索引；</br>
+	 * 同名的普通索引（未使用别名时创建的）已存在时跳过。</br>
+	 * 未启用别名时，索引不存在才创建，创建时在各类型映射的 _meta 中记录索引定义摘要；</br>
+	 * 索引已存在且摘要与当前定义不一致时只输出警告，不修改索引。</br>
+	 * 多个实例同时启动时重复的创建请求会被当作成功处理，</br>
+	 * 其他实例正在迁移时等待别名切换，不重复复制数据
+	 * 
+	 * @param file
+	 * @return 检查结果，action 为 exists、created、reindexed、skipped 或 failed
+	 */
+	private JSONObject createIndex(File file) {
 		String indexName = file.getName().substring(0, file.getName().lastIndexOf(".")).split("__")[1];
 		LOGGER.info("正在检查索引,{}", indexName);
 
-		String json = FileUtils.getContent(file);
-		RequestBody body = RequestBody.create(mediaType, json);
-		Request request = new Request.Builder()
-				.url(String.format("http://%s:%s/%s", getIps()[0], getHttpPorts()[0], indexName)).post(body).build();
+		JSONObject report = new JSONObject();
+		report.put("index", indexName);
 		try {
-			Response response = client.newCall(request).execute();
-			LOGGER.info("索引 {} 创建成功 ...", indexName);
+			String json = FileUtils.getContent(file);
+			if (!isIndexAliasEnabled()) {
+				if (exists(indexName)) {
+					report.put("action", "exists");
+					checkDrift(indexName, getIndexVersion(json));
+				} else {
+					putIndex(indexName, withVersionMeta(json, getIndexVersion(json)));
+					report.put("action", "created");
+				}
+				return report;
+			}
+
+			String physical = indexName + "_" + getIndexVersion(json);
+			report.put("physical", physical);
+			String current = getAliasTarget(indexName);
+
+			if (physical.equals(current)) {
+				report.put("action", "exists");
+			} else if (current == null && exists(indexName)) {
+				LOGGER.warn("索引 {} 已存在且不是别名，跳过", indexName);
+				report.put("action", "skipped");
+			} else if (current == null) {
+				putIndex(physical, json);
+				swapAlias(indexName, null, physical);
+				report.put("action", "created");
+			} else if (!putIndex(physical, json)
+					&& (isWriteBlocked(current) || isReindexRunning(current, physical))
+					&& awaitMigration(indexName, current, physical)) {
+				report.put("action", "exists");
+			} else {
+				migrate(indexName, current, physical);
+				report.put("action", "reindexed");
+			}
 		} catch (IOException e) {
-			LOGGER.error(e.getMessage(), e);
+			LOGGER.error(String.format("索引 %s 创建失败", indexName), e);
+			report.put("action", "failed");
+			report.put("message", e.getMessage());
+		}
+		return report;
+	}
+
+	private boolean exists(String index) throws IOException {
+		return getHttpClient().execute("HEAD", "/" + index, null).isSuccessful();
+	}
+
+	/**
+	 * 创建索引，已存在时视为成功
+	 * 
+	 * @param index
+	 * @param json
+	 * @return 本次创建的返回 true，已存在时返回 false
+	 * @throws IOException
+	 */
+	private boolean putIndex(String index, String json) throws IOException {
+		EsHttpClient.Result result = getHttpClient().execute("PUT", "/" + index, json);
+		if (result.isSuccessful()) {
+			return true;
+		} else if (result.getBody().contains("index_already_exists")) {
+			return false;
+		}
+		throw new IOException(String.format("创建索引 %s 失败，%s：%s", index, result.getCode(), result.getBody()));
+	}
+
+	/**
+	 * 将别名从旧索引迁移到新索引：</br>
+	 * 1. 不加写入锁复制全部数据，期间读写都走旧索引；</br>
+	 * 2. 给旧索引加上写入锁，再复制一次，只写入第一次复制之后新增或修改过的文档（按版本号比较）；</br>
+	 * 3. 原子地切换别名，清理更早的索引。</br>
+	 * 只有第 2 步期间写入会被拒绝：index、delete 等请求抛出异常，updateDocument 返回 false，需要调用方重试；</br>
+	 * 第 1 步期间删除的文档可能已被复制，会留在新索引中。</br>
+	 * 失败时解除旧索引的写入锁
+	 * 
+	 * @param alias
+	 * @param current 别名当前指向的索引
+	 * @param physical
+	 * @throws IOException
+	 */
+	private void migrate(String alias, String current, String physical) throws IOException {
+		reindex(current, physical);
+		setWriteBlock(current, true);
+		try {
+			long start = System.currentTimeMillis();
+			reindex(current, physical);
+			LOGGER.info("索引 {} 的写入锁已持续 {} 毫秒", current, System.currentTimeMillis() - start);
+			swapAlias(alias, current, physical);
+			LOGGER.info("索引 {} 的别名已从 {} 切换到 {}", alias, current, physical);
+		} catch (IOException e) {
+			if (physical.equals(getAliasTarget(alias))) {
+				// 其他实例已完成切换
+				LOGGER.info("索引 {} 的别名已由其他实例切换到 {}", alias, physical);
+				return;
+			}
+			setWriteBlock(current, false);
+			throw e;
+		}
+		deleteReplacedIndices(alias, physical);
+	}
+
+	/**
+	 * 设置或解除索引的写入锁（index.blocks.write）
+	 * 
+	 * @param index
+	 * @param blocked
+	 * @throws IOException
+	 */
+	private void setWriteBlock(String index, boolean blocked) throws IOException {
+		JSONObject settings = new JSONObject();
+		settings.put("index.blocks.write", blocked);
+		EsHttpClient.Result result = getHttpClient().execute("PUT", "/" + index + "/_settings",
+				settings.toJSONString());
+		if (!result.isSuccessful()) {
+			throw new IOException(String.format("设置索引 %s 的写入锁失败，%s：%s", index, result.getCode(), result.getBody()));
+		}
+	}
+
+	private boolean isWriteBlocked(String index) throws IOException {
+		EsHttpClient.Result result = getHttpClient().execute("GET",
+				"/" + index + "/_settings/index.blocks.write?flat_settings=true", null);
+		if (!result.isSuccessful()) {
+			return false;
+		}
+		JSONObject indices = JSON.parseObject(result.getBody());
+		JSONObject settings = indices.containsKey(index) ? indices.getJSONObject(index).getJSONObject("settings")
+				: null;
+		return settings != null && settings.getBooleanValue("index.blocks.write");
+	}
+
+	/**
+	 * 其他实例正在迁移时等待别名切换，最多等待 {@link #getReindexTimeoutMillis()}
+	 * 
+	 * @param alias
+	 * @param current 别名当前指向的索引
+	 * @param physical
+	 * @return 别名已切换返回 true；没有从 current 到 physical 的 _reindex（迁移的实例已退出）时返回 false，由本实例接着迁移
+	 * @throws IOException 超时未切换
+	 */
+	private boolean awaitMigration(String alias, String current, String physical) throws IOException {
+		LOGGER.info("索引 {} 正在由其他实例迁移到 {}，等待别名切换", alias, physical);
+		long deadline = System.currentTimeMillis() + getReindexTimeoutMillis();
+		while (!physical.equals(getAliasTarget(alias))) {
+			if (!isReindexRunning(current, physical)) {
+				return physical.equals(getAliasTarget(alias));
+			}
+			if (System.currentTimeMillis() > deadline) {
+				throw new IOException(String.format("等待别名 %s 切换到 %s 超时", alias, physical));
+			}
+			try {
+				Thread.sleep(1000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException(String.format("等待别名 %s 切换时被中断", alias), e);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 集群中是否有从 source 复制到 dest 的 _reindex 任务，按任务描述中的索引名过滤，</br>
+	 * 集群中其他索引的 _reindex 不算在内
+	 */
+	private boolean isReindexRunning(String source, String dest) throws IOException {
+		EsHttpClient.Result result = getHttpClient().execute("GET", "/_tasks?actions=*reindex&detailed=true", null);
+		if (!result.isSuccessful()) {
+			return false;
+		}
+		JSONObject nodes = JSON.parseObject(result.getBody()).getJSONObject("nodes");
+		if (nodes != null) {
+			for (String node : nodes.keySet()) {
+				Object tasks = nodes.getJSONObject(node).get("tasks");
+				Collection<?> values = tasks instanceof Map ? ((Map<?, ?>) tasks).values()
+						: tasks instanceof List ? (List<?>) tasks : Collections.emptyList();
+				for (Object task : values) {
+					if (isReindexTask(task, source, dest)) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 任务描述形如 reindex from [source] to [dest]，没有描述时无法区分，按匹配处理
+	 */
+	static boolean isReindexTask(Object task, String source, String dest) {
+		String description = task instanceof Map ? (String) ((Map<?, ?>) task).get("description") : null;
+		if (description == null) {
+			return true;
+		}
+		return description.contains("[" + source + "]") && description.contains("[" + dest + "]");
+	}
+
+	/**
+	 * 删除别名之前指向过的实际索引，按创建时间保留最近的 {@link #getRetainedIndices()} 个
+	 * 
+	 * @param alias
+	 * @param physical 当前指向的索引，不删除
+	 */
+	private void deleteReplacedIndices(String alias, String physical) {
+		try {
+			EsHttpClient.Result result = getHttpClient().execute("GET",
+					"/" + alias + "_*/_settings/index.creation_date?flat_settings=true", null);
+			if (!result.isSuccessful()) {
+				LOGGER.warn("读取索引 {} 的历史版本失败，{}：{}", alias, result.getCode(), result.getBody());
+				return;
+			}
+			final JSONObject indices = JSON.parseObject(result.getBody());
+			List<String> replaced = new ArrayList<String>();
+			for (String index : indices.keySet()) {
+				if (!index.equals(physical) && index.matches(alias + "_[0-9a-f]{8}")) {
+					replaced.add(index);
+				}
+			}
+			Collections.sort(replaced, new Comparator<String>() {
+
+				@Override
+				public int compare(String a, String b) {
+					return Long.compare(getCreationDate(indices, b), getCreationDate(indices, a));
+				}
+			});
+			for (int i = getRetainedIndices(); i < replaced.size(); i++) {
+				EsHttpClient.Result deleted = getHttpClient().execute("DELETE", "/" + replaced.get(i), null);
+				if (deleted.isSuccessful()) {
+					LOGGER.info("已删除索引 {} 的旧版本 {}", alias, replaced.get(i));
+				} else {
+					LOGGER.warn("删除索引 {} 失败，{}：{}", replaced.get(i), deleted.getCode(), deleted.getBody());
+				}
+			}
+		} catch (IOException e) {
+			LOGGER.error(String.format("清理索引 %s 的旧版本失败", alias), e);
+		}
+	}
+
+	private static long getCreationDate(JSONObject indices, String index) {
+		JSONObject settings = indices.getJSONObject(index).getJSONObject("settings");
+		return settings == null ? 0 : settings.getLongValue("index.creation_date");
+	}
+
+	/**
+	 * 获取别名指向的索引
+	 * 
+	 * @param alias
+	 * @return 别名不存在时返回 null
+	 * @throws IOException
+	 */
+	private String getAliasTarget(String alias) throws IOException {
+		EsHttpClient.Result result = getHttpClient().execute("GET", "/_alias/" + alias, null);
+		if (!result.isSuccessful()) {
+			return null;
+		}
+		JSONObject indices = JSON.parseObject(result.getBody());
+		for (String index : indices.keySet()) {
+			return index;
+		}
+		return null;
+	}
+
+	/**
+	 * 将旧索引的数据复制到新索引，保留源文档的版本号：新索引中没有或版本更旧的文档才写入，可重复执行
+	 * 
+	 * @param source
+	 * @param dest
+	 * @throws IOException
+	 */
+	private void reindex(String source, String dest) throws IOException {
+		JSONObject body = new JSONObject();
+		body.put("conflicts", "proceed");
+		JSONObject sourceIndex = new JSONObject();
+		sourceIndex.put("index", source);
+		body.put("source", sourceIndex);
+		JSONObject destIndex = new JSONObject();
+		destIndex.put("index", dest);
+		destIndex.put("version_type", "external");
+		body.put("dest", destIndex);
+
+		EsHttpClient.Result result = getHttpClient().execute("POST", "/_reindex?refresh=true", body.toJSONString(),
+				getReindexTimeoutMillis());
+		JSONObject response = result.isSuccessful() ? JSON.parseObject(result.getBody()) : null;
+		if (response == null || (response.getJSONArray("failures") != null
+				&& !response.getJSONArray("failures").isEmpty())) {
+			throw new IOException(String.format("从 %s 复制数据到 %s 失败，%s：%s", source, dest, result.getCode(),
+					result.getBody()));
+		}
+		LOGGER.info("已从 {} 复制数据到 {}，共 {} 条，新增 {} 条，更新 {} 条", source, dest, response.getLongValue("total"),
+				response.getLongValue("created"), response.getLongValue("updated"));
+	}
+
+	/**
+	 * 在一个请求中原子地将别名从旧索引切换到新索引
+	 * 
+	 * @param alias
+	 * @param from  为 null 时只添加别名
+	 * @param to
+	 * @throws IOException
+	 */
+	private void swapAlias(String alias, String from, String to) throws IOException {
+		JSONArray actions = new JSONArray();
+		if (from != null) {
+			actions.add(getAliasAction("remove", from, alias));
 		}
+		actions.add(getAliasAction("add", to, alias));
+		JSONObject body = new JSONObject();
+		body.put("actions", actions);
+
+		EsHttpClient.Result result = getHttpClient().execute("POST", "/_aliases", body.toJSONString());
+		if (!result.isSuccessful()) {
+			throw new IOException(
+					String.format("切换别名 %s 到 %s 失败，%s：%s", alias, to, result.getCode(), result.getBody()));
+		}
+	}
+
+	private JSONObject getAliasAction(String type, String index, String alias) {
+		JSONObject target = new JSONObject();
+		target.put("index", index);
+		target.put("alias", alias);
+		JSONObject action = new JSONObject();
+		action.put(type, target);
+		return action;
+	}
+
+	/**
+	 * 索引定义的摘要，按解析后的内容计算，键的顺序、空白和换行的变化不会生成新的实际索引
+	 * 
+	 * @param json
+	 * @return
+	 */
+	static String getIndexVersion(String json) {
+		try {
+			String canonical = JSON.toJSONString(canonicalize(JSON.parse(json)));
+			byte[] digest = MessageDigest.getInstance("MD5").digest(canonical.getBytes(StandardCharsets.UTF_8));
+			StringBuilder version = new StringBuilder();
+			for (int i = 0; i < 4; i++) {
+				version.append(String.format("%02x", digest[i]));
+			}
+			return version.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * 在索引定义的各类型映射的 _meta 中记录摘要
+	 * 
+	 * @param json
+	 * @param version
+	 * @return
+	 */
+	static String withVersionMeta(String json, String version) {
+		JSONObject definition = JSON.parseObject(json);
+		JSONObject mappings = definition.getJSONObject("mappings");
+		if (mappings == null) {
+			return json;
+		}
+		for (String type : mappings.keySet()) {
+			JSONObject mapping = mappings.getJSONObject(type);
+			JSONObject meta = mapping.getJSONObject("_meta");
+			if (meta == null) {
+				meta = new JSONObject();
+				mapping.put("_meta", meta);
+			}
+			meta.put(INDEX_VERSION, version);
+		}
+		return definition.toJSONString();
+	}
+
+	/**
+	 * 比较已存在索引的映射中记录的摘要与当前定义的摘要，不一致时输出警告；</br>
+	 * 未记录摘要（在记录摘要之前创建的索引）时无法比较
+	 * 
+	 * @param index
+	 * @param version 当前定义的摘要
+	 */
+	private void checkDrift(String index, String version) {
+		try {
+			EsHttpClient.Result result = getHttpClient().execute("GET", "/" + index + "/_mapping", null);
+			if (!result.isSuccessful()) {
+				LOGGER.warn("读取索引 {} 的映射失败，{}：{}", index, result.getCode(), result.getBody());
+				return;
+			}
+			String recorded = getRecordedVersion(JSON.parseObject(result.getBody()));
+			if (recorded == null) {
+				LOGGER.info("索引 {} 未记录定义摘要，无法检查索引文件是否有变化", index);
+			} else if (!recorded.equals(version)) {
+				LOGGER.warn("索引 {} 的定义已变化（{} -> {}），未启用别名时不会更新已存在的索引，"
+						+ "需要手动迁移或开启 isIndexAliasEnabled", index, recorded, version);
+			}
+		} catch (IOException e) {
+			LOGGER.error(String.format("检查索引 %s 的定义失败", index), e);
+		}
+	}
+
+	/**
+	 * GET /index/_mapping 的结果中任一类型记录的摘要
+	 */
+	static String getRecordedVersion(JSONObject response) {
+		for (String index : response.keySet()) {
+			JSONObject mappings = response.getJSONObject(index).getJSONObject("mappings");
+			if (mappings == null) {
+				continue;
+			}
+			for (String type : mappings.keySet()) {
+				JSONObject meta = mappings.getJSONObject(type).getJSONObject("_meta");
+				if (meta != null && meta.getString(INDEX_VERSION) != null) {
+					return meta.getString(INDEX_VERSION);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 对象的键按字典序排列，用于计算摘要
+	 */
+	private static Object canonicalize(Object value) {
+		if (value instanceof Map) {
+			Map<String, Object> sorted = new TreeMap<String, Object>();
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				sorted.put(String.valueOf(entry.getKey()), canonicalize(entry.getValue()));
+			}
+			return sorted;
+		} else if (value instanceof List) {
+			List<Object> list = new ArrayList<Object>();
+			for (Object item : (List<?>) value) {
+				list.add(canonicalize(item));
+			}
+			return list;
+		}
+		return value;
+	}
+
+	/**
+	 * 是否以别名管理索引，默认为 false，子类可覆盖；</br>
+	 * 开启后索引定义变化时会迁移数据，最后一次追平复制期间写入被拒绝
+	 * 
+	 * @return
+	 */
+	public boolean isIndexAliasEnabled() {
+		return false;
+	}
+
+	/**
+	 * 别名切换后保留的旧实际索引个数，更早的删除，默认为 1，子类可覆盖；</br>
+	 * 保留的旧索引带有写入锁，只用于回退或核对
+	 * 
+	 * @return
+	 */
+	public int getRetainedIndices() {
+		return 1;
+	}
+
+	/**
+	 * 索引文件变化时复制数据的超时时间（毫秒），子类可覆盖
+	 * 
+	 * @return
+	 */
+	public long getReindexTimeoutMillis() {
+		return 60 * 60 * 1000L;
 	}
 
-	private void createIndexData(File file) {
+	/**
+	 * 流式读取数据文件，按 {@link #getSeedBulkActions()} 分批通过 _bulk 写入
+	 * 
+	 * @param file
+	 * @return 写入报告，包含 file、index、type、total、failed、took 和每秒文档数 docsPerSecond
+	 */
+	private JSONObject createIndexData(File file) {
 		String indexName = file.getName().substring(0, file.getName().lastIndexOf(".")).split("__")[1];
 		String tyepeName = file.getName().substring(0, file.getName().lastIndexOf(".")).split("__")[2];
 		LOGGER.info("正在检查索引数据，索引：{}，类型：{}", indexName, tyepeName);
 
-		String json = FileUtils.getContent(file);
+		long start = System.currentTimeMillis();
+		String url = String.format("/%s/%s/_bulk", indexName, tyepeName);
+		int total = 0;
+		int failed = 0;
 
-		JSONArray array = JSON.parseArray(json);
-		for (int i = 0; i < array.size(); i++) {
-			JSONObject obj = array.getJSONObject(i);
-			String id = obj.getString("id");
+		JsonArrayReader reader = null;
+		try {
+			reader = FileUtils.openJsonArray(file);
+			StringBuilder bulk = new StringBuilder();
+			int actions = 0;
 
-			RequestBody body = RequestBody.create(mediaType, obj.toJSONString());
-			Request request = new Request.Builder().url(
-					String.format("http://%s:%s/%s/%s/%s", getIps()[0], getHttpPorts()[0], indexName, tyepeName, id))
-					.post(body).build();
-			try {
-				Response response = client.newCall(request).execute();
-				LOGGER.info("索引 {}, 类型:{},创建数据成功:{} ...", indexName, tyepeName, obj);
-			} catch (IOException e) {
-				LOGGER.error(e.getMessage(), e);
+			while (reader.hasNext()) {
+				JSONObject obj = reader.next();
+				appendBulkAction(bulk, obj);
+				actions++;
+				if (actions >= getSeedBulkActions()) {
+					failed += postBulk(url, bulk.toString(), actions);
+					total += actions;
+					bulk.setLength(0);
+					actions = 0;
+				}
+			}
+
+			if (actions > 0) {
+				failed += postBulk(url, bulk.toString(), actions);
+				total += actions;
 			}
+		} catch (Exception e) {
+			LOGGER.error(String.format("索引 %s, 类型:%s,创建数据失败，文件：%s", indexName, tyepeName, file), e);
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (IOException e) {
+					LOGGER.error(e.getMessage(), e);
+				}
+			}
+		}
+
+		long took = System.currentTimeMillis() - start;
+		JSONObject report = new JSONObject();
+		report.put("file", file.getName());
+		report.put("index", indexName);
+		report.put("type", tyepeName);
+		report.put("total", total);
+		report.put("failed", failed);
+		report.put("took", took);
+		report.put("docsPerSecond", took == 0 ? total : total * 1000L / took);
+		return report;
+	}
+
+	private void appendBulkAction(StringBuilder bulk, JSONObject obj) {
+		String id = obj.getString("id");
+		if (id == null) {
+			bulk.append("{\"index\":{}}\n");
+		} else {
+			JSONObject index = new JSONObject();
+			index.put("_id", id);
+			JSONObject action = new JSONObject();
+			action.put("index", index);
+			bulk.append(action.toJSONString()).append('\n');
 		}
+		bulk.append(obj.toJSONString()).append('\n');
+	}
+
+	/**
+	 * 提交一个 _bulk 请求
+	 * 
+	 * @param url    以 / 开头的路径
+	 * @param ndjson
+	 * @param actions 本批次的文档数
+	 * @return 本批次失败的文档数
+	 */
+	private int postBulk(String url, String ndjson, int actions) {
+		try {
+			EsHttpClient.Result response = getHttpClient().execute("POST", url, ndjson);
+			if (!response.isSuccessful()) {
+				LOGGER.error("批量创建数据失败，{}：{}", response.getCode(), response.getBody());
+				return actions;
+			}
+			JSONObject result = JSON.parseObject(response.getBody());
+			if (!result.getBooleanValue("errors")) {
+				return 0;
+			}
+			int failed = 0;
+			JSONArray items = result.getJSONArray("items");
+			for (int i = 0; i < items.size(); i++) {
+				JSONObject item = items.getJSONObject(i).getJSONObject("index");
+				if (item != null && item.containsKey("error")) {
+					LOGGER.warn("创建数据失败，id：{}，{}", item.getString("_id"), item.get("error"));
+					failed++;
+				}
+			}
+			return failed;
+		} catch (IOException e) {
+			LOGGER.error(e.getMessage(), e);
+			return actions;
+		}
+	}
+
+	/**
+	 * 访问 ES HTTP 接口的客户端，在 {@link #getIps()} 和 {@link #getHttpPorts()} 的所有节点间轮询，首次使用时创建
+	 * 
+	 * @return
+	 */
+	public synchronized EsHttpClient getHttpClient() {
+		if (httpClient == null) {
+			httpClient = new EsHttpClient(getIps(), getHttpPorts(), getHttpMaxRequests(), getHttpGzipThreshold());
+		}
+		return httpClient;
+	}
+
+	/**
+	 * HTTP 同时进行的请求数上限，也是连接池保留的空闲连接数，子类可覆盖
+	 * 
+	 * @return
+	 */
+	public int getHttpMaxRequests() {
+		return 32;
+	}
+
+	/**
+	 * HTTP 请求体超过该字节数时以 gzip 压缩，默认为 0 即不压缩，子类可覆盖；</br>
+	 * ES 2.x 默认 http.compression: false，会拒绝压缩的请求体，开启前需要在所有节点上配置 http.compression: true
+	 * 
+	 * @return 小于等于 0 表示不压缩
+	 */
+	public long getHttpGzipThreshold() {
+		return 0;
+	}
+
+	/**
+	 * 同时导入的数据文件数，子类可覆盖
+	 * 
+	 * @return
+	 */
+	public int getSeedThreads() {
+		return 4;
+	}
+
+	/**
+	 * 导入数据时每个 _bulk 请求的文档数，子类可覆盖
+	 * 
+	 * @return
+	 */
+	public int getSeedBulkActions() {
+		return 1000;
 	}
 
 	public abstract String[] getIps();
@@ -0,0 +1,125 @@
+package teclan.es;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequestBuilder;
+import org.elasticsearch.action.ActionResponse;
+
+import teclan.es.metrics.Metrics;
+import teclan.es.metrics.MetricsListener;
+
+/**
+ * 将 ES 的 {@link ActionListener} 回调转换为 {@link CompletableFuture}，调用期间不占用线程
+ *
+ * 取消返回的 future 只是不再等待结果，已发出的请求仍会在 ES 上执行完
+ *
+ * @author dev
+ *
+ */
+public class ActionFutures {
+
+	private static final ScheduledThreadPoolExecutor TIMEOUTS = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "es-async-timeout");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	static {
+		// 大部分 future 在超时前完成，取消的定时任务立即移出队列，不在队列中堆积到超时时间
+		TIMEOUTS.setRemoveOnCancelPolicy(true);
+	}
+
+	/**
+	 * 异步执行请求并记录指标
+	 *
+	 * @param listener
+	 * @param operation
+	 * @param index
+	 * @param builder
+	 * @return
+	 */
+	public static <Response extends ActionResponse> CompletableFuture<Response> execute(
+			final MetricsListener listener, final String operation, final String index,
+			final ActionRequestBuilder<?, Response, ?> builder) {
+		final CompletableFuture<Response> future = new CompletableFuture<Response>();
+		final long start = System.nanoTime();
+		builder.execute(new ActionListener<Response>() {
+
+			@Override
+			public void onResponse(Response response) {
+				listener.onRequest(operation, index, System.nanoTime() - start,
+						Metrics.getBytes(builder.request(), response), Metrics.getHits(response), false);
+				future.complete(response);
+			}
+
+			@Override
+			public void onFailure(Throwable e) {
+				listener.onRequest(operation, index, System.nanoTime() - start, Metrics.getBytes(builder.request()),
+						0, true);
+				if (Metrics.isRejected(e)) {
+					listener.onRejection(operation, index);
+				}
+				future.completeExceptionally(e);
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * 等待 future 完成，失败原因为 RuntimeException 时直接抛出该异常而不是 {@link CompletionException}
+	 *
+	 * @param future
+	 * @return
+	 */
+	public static <T> T join(CompletableFuture<T> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * 超时未完成时以 {@link TimeoutException} 结束 future
+	 *
+	 * @param future
+	 * @param timeoutMillis 小于等于 0 表示不限时
+	 * @return 传入的 future
+	 */
+	public static <T> CompletableFuture<T> withTimeout(final CompletableFuture<T> future, final long timeoutMillis) {
+		if (timeoutMillis <= 0 || future.isDone()) {
+			return future;
+		}
+		final ScheduledFuture<?> timeout = TIMEOUTS.schedule(new Runnable() {
+
+			@Override
+			public void run() {
+				future.completeExceptionally(new TimeoutException(String.format("%s 毫秒内未完成", timeoutMillis)));
+			}
+		}, timeoutMillis, TimeUnit.MILLISECONDS);
+		future.whenComplete(new BiConsumer<T, Throwable>() {
+
+			@Override
+			public void accept(T value, Throwable failure) {
+				timeout.cancel(false);
+			}
+		});
+		return future;
+	}
+}
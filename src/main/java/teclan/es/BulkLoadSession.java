@@ -0,0 +1,318 @@
+package teclan.es;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthResponse;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.collect.ImmutableOpenMap;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+
+/**
+ * 批量导入会话
+ *
+ * {@link #open()} 时关闭索引的自动刷新并将副本数设为 0，{@link #close()} 时恢复原来的设置，</br>
+ * 按需强制合并段，并等待索引恢复为 green；导入失败时同样需要调用 close。</br>
+ * 同一索引上的会话按引用计数：只有第一个打开的会话记录原来的设置，最后一个关闭的会话负责恢复，</br>
+ * 嵌套或并发的会话不会把导入设置当作原设置
+ *
+ * @author dev
+ *
+ */
+public class BulkLoadSession implements Closeable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(BulkLoadSession.class);
+
+	private static final String REFRESH_INTERVAL = "index.refresh_interval";
+	private static final String NUMBER_OF_REPLICAS = "index.number_of_replicas";
+
+	/**
+	 * 实际索引名到打开的会话数和原来设置的映射，进程内共享
+	 */
+	private static final Map<String, Opened> OPENED = new HashMap<String, Opened>();
+
+	private final Operations operations;
+	private final String index;
+	private final int maxNumSegments;
+	private final long greenTimeoutMillis;
+
+	/**
+	 * 本会话打开的实际索引，index 为别名时可能有多个
+	 */
+	private final List<String> names = new ArrayList<String>();
+
+	/**
+	 * 通过 transport 客户端操作
+	 *
+	 * @param client
+	 * @param index              索引名或别名
+	 * @param maxNumSegments     导入后强制合并到的段数，小于等于 0 表示不合并
+	 * @param greenTimeoutMillis 等待索引恢复为 green 的时间（毫秒），也是强制合并的超时
+	 */
+	public BulkLoadSession(Client client, String index, int maxNumSegments, long greenTimeoutMillis) {
+		this(new TransportOperations(client), index, maxNumSegments, greenTimeoutMillis);
+	}
+
+	/**
+	 * 通过 HTTP 接口操作
+	 *
+	 * @param client
+	 * @param index              索引名或别名
+	 * @param maxNumSegments     导入后强制合并到的段数，小于等于 0 表示不合并
+	 * @param greenTimeoutMillis 等待索引恢复为 green 的时间（毫秒），也是强制合并的超时
+	 */
+	public BulkLoadSession(EsHttpClient client, String index, int maxNumSegments, long greenTimeoutMillis) {
+		this(new HttpOperations(client), index, maxNumSegments, greenTimeoutMillis);
+	}
+
+	BulkLoadSession(Operations operations, String index, int maxNumSegments, long greenTimeoutMillis) {
+		this.operations = operations;
+		this.index = index;
+		this.maxNumSegments = maxNumSegments;
+		this.greenTimeoutMillis = greenTimeoutMillis;
+	}
+
+	/**
+	 * 记录原来的设置并切换到导入设置，索引上已有打开的会话时只增加计数
+	 *
+	 * @throws IOException 读取或修改设置失败，此时会话未打开，不需要 close
+	 */
+	public void open() throws IOException {
+		synchronized (OPENED) {
+			Map<String, Map<String, String>> current = operations.getSettings(index);
+			List<String> opened = new ArrayList<String>();
+			try {
+				for (String name : current.keySet()) {
+					if (OPENED.containsKey(name)) {
+						OPENED.get(name).count++;
+						opened.add(name);
+						continue;
+					}
+					Map<String, String> settings = current.get(name);
+					Map<String, String> original = new HashMap<String, String>();
+					original.put(REFRESH_INTERVAL, settings.containsKey(REFRESH_INTERVAL) ? settings.get(REFRESH_INTERVAL)
+							: "1s");
+					original.put(NUMBER_OF_REPLICAS, settings.containsKey(NUMBER_OF_REPLICAS)
+							? settings.get(NUMBER_OF_REPLICAS) : "1");
+
+					Map<String, String> bulk = new HashMap<String, String>();
+					bulk.put(REFRESH_INTERVAL, "-1");
+					bulk.put(NUMBER_OF_REPLICAS, "0");
+					operations.updateSettings(name, bulk);
+					OPENED.put(name, new Opened(original));
+					opened.add(name);
+					LOGGER.info("索引 {} 已切换到批量导入设置，原设置：{}", name, original);
+				}
+			} catch (IOException e) {
+				for (String name : opened) {
+					release(name);
+				}
+				throw e;
+			} catch (RuntimeException e) {
+				for (String name : opened) {
+					release(name);
+				}
+				throw e;
+			}
+			names.addAll(opened);
+		}
+	}
+
+	/**
+	 * 关闭会话，索引上最后一个会话关闭时恢复原来的设置，刷新索引，按需强制合并，并等待索引恢复为 green
+	 */
+	@Override
+	public void close() {
+		List<String> restored = new ArrayList<String>();
+		synchronized (OPENED) {
+			for (String name : names) {
+				if (release(name)) {
+					restored.add(name);
+				} else {
+					LOGGER.info("索引 {} 上还有其他批量导入会话，暂不恢复设置", name);
+				}
+			}
+			names.clear();
+		}
+
+		for (String name : restored) {
+			try {
+				operations.refresh(name);
+				if (maxNumSegments > 0) {
+					operations.forceMerge(name, maxNumSegments, greenTimeoutMillis);
+				}
+				operations.waitForGreen(name, greenTimeoutMillis);
+			} catch (Exception e) {
+				LOGGER.error(String.format("索引 %s 批量导入收尾失败", name), e);
+			}
+		}
+	}
+
+	/**
+	 * 减少计数，减到 0 时恢复原来的设置
+	 *
+	 * @return 是否已恢复
+	 */
+	private boolean release(String name) {
+		Opened opened = OPENED.get(name);
+		if (opened == null || --opened.count > 0) {
+			return false;
+		}
+		OPENED.remove(name);
+		try {
+			operations.updateSettings(name, opened.original);
+		} catch (Exception e) {
+			LOGGER.error(String.format("索引 %s 恢复设置失败：%s", name, opened.original), e);
+		}
+		return true;
+	}
+
+	private static class Opened {
+		private final Map<String, String> original;
+		private int count = 1;
+
+		Opened(Map<String, String> original) {
+			this.original = original;
+		}
+	}
+
+	/**
+	 * 会话用到的索引操作，失败时抛出异常
+	 */
+	interface Operations {
+
+		/**
+		 * @param index
+		 * @return 实际索引名到设置的映射，设置的键为 flat 格式
+		 */
+		Map<String, Map<String, String>> getSettings(String index) throws IOException;
+
+		void updateSettings(String index, Map<String, String> settings) throws IOException;
+
+		void refresh(String index) throws IOException;
+
+		void forceMerge(String index, int maxNumSegments, long timeoutMillis) throws IOException;
+
+		void waitForGreen(String index, long timeoutMillis) throws IOException;
+	}
+
+	private static class TransportOperations implements Operations {
+		private final Client client;
+
+		TransportOperations(Client client) {
+			this.client = client;
+		}
+
+		@Override
+		public Map<String, Map<String, String>> getSettings(String index) {
+			GetSettingsResponse response = client.admin().indices().prepareGetSettings(index).execute().actionGet();
+			ImmutableOpenMap<String, Settings> indexToSettings = response.getIndexToSettings();
+			Map<String, Map<String, String>> result = new HashMap<String, Map<String, String>>();
+			for (String name : indexToSettings.keys().toArray(String.class)) {
+				result.put(name, indexToSettings.get(name).getAsMap());
+			}
+			return result;
+		}
+
+		@Override
+		public void updateSettings(String index, Map<String, String> settings) throws IOException {
+			if (!client.admin().indices().prepareUpdateSettings(index)
+					.setSettings(Settings.settingsBuilder().put(settings).build()).execute().actionGet()
+					.isAcknowledged()) {
+				throw new IOException(String.format("修改索引 %s 的设置未被确认：%s", index, settings));
+			}
+		}
+
+		@Override
+		public void refresh(String index) {
+			client.admin().indices().prepareRefresh(index).execute().actionGet();
+		}
+
+		@Override
+		public void forceMerge(String index, int maxNumSegments, long timeoutMillis) {
+			client.admin().indices().prepareForceMerge(index).setMaxNumSegments(maxNumSegments).execute()
+					.actionGet(timeoutMillis);
+		}
+
+		@Override
+		public void waitForGreen(String index, long timeoutMillis) {
+			ClusterHealthResponse health = client.admin().cluster().prepareHealth(index).setWaitForGreenStatus()
+					.setTimeout(TimeValue.timeValueMillis(timeoutMillis)).execute().actionGet();
+			if (health.isTimedOut()) {
+				LOGGER.warn("索引 {} 在 {} 毫秒内未恢复为 green，当前状态：{}", index, timeoutMillis, health.getStatus());
+			} else {
+				LOGGER.info("索引 {} 已恢复原设置，状态：{}", index, health.getStatus());
+			}
+		}
+	}
+
+	private static class HttpOperations implements Operations {
+		private final EsHttpClient client;
+
+		HttpOperations(EsHttpClient client) {
+			this.client = client;
+		}
+
+		@Override
+		public Map<String, Map<String, String>> getSettings(String index) throws IOException {
+			JSONObject indices = JSON.parseObject(
+					check(index, client.execute("GET", "/" + index + "/_settings?flat_settings=true", null)));
+			Map<String, Map<String, String>> result = new HashMap<String, Map<String, String>>();
+			for (String name : indices.keySet()) {
+				JSONObject settings = indices.getJSONObject(name).getJSONObject("settings");
+				Map<String, String> flat = new HashMap<String, String>();
+				for (String key : settings.keySet()) {
+					flat.put(key, settings.getString(key));
+				}
+				result.put(name, flat);
+			}
+			return result;
+		}
+
+		@Override
+		public void updateSettings(String index, Map<String, String> settings) throws IOException {
+			check(index, client.execute("PUT", "/" + index + "/_settings", JSON.toJSONString(settings)));
+		}
+
+		@Override
+		public void refresh(String index) throws IOException {
+			check(index, client.execute("POST", "/" + index + "/_refresh", null));
+		}
+
+		@Override
+		public void forceMerge(String index, int maxNumSegments, long timeoutMillis) throws IOException {
+			check(index, client.execute("POST", "/" + index + "/_forcemerge?max_num_segments=" + maxNumSegments, null,
+					timeoutMillis));
+		}
+
+		@Override
+		public void waitForGreen(String index, long timeoutMillis) throws IOException {
+			JSONObject health = JSON.parseObject(check(index, client.execute("GET",
+					"/_cluster/health/" + index + "?wait_for_status=green&timeout=" + timeoutMillis + "ms", null,
+					timeoutMillis + 10 * 1000L)));
+			if (health.getBooleanValue("timed_out")) {
+				LOGGER.warn("索引 {} 在 {} 毫秒内未恢复为 green，当前状态：{}", index, timeoutMillis, health.getString("status"));
+			} else {
+				LOGGER.info("索引 {} 已恢复原设置，状态：{}", index, health.getString("status"));
+			}
+		}
+
+		private static String check(String index, EsHttpClient.Result result) throws IOException {
+			// 等待 green 超时时返回 408，响应体中有 timed_out
+			if (!result.isSuccessful() && result.getCode() != 408) {
+				throw new IOException(String.format("索引 %s 操作失败，%s：%s", index, result.getCode(), result.getBody()));
+			}
+			return result.getBody();
+		}
+	}
+}
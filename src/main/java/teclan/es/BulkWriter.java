@@ -0,0 +1,299 @@
+package teclan.es;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.bulk.BackoffPolicy;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.rest.RestStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import teclan.es.metrics.Metrics;
+import teclan.es.metrics.MetricsListener;
+
+/**
+ * 基于 {@link BulkProcessor} 的异步写缓冲
+ *
+ * 写请求先进入缓冲区，达到文档数、字节数或时间间隔时批量提交，</br>
+ * 被拒绝（EsRejectedExecutionException）的条目按退避策略延迟后重新加入缓冲区，</br>
+ * 重试由本类完成而不使用 BulkProcessor 自带的重试：后者会把重试的条目排在响应的末尾，</br>
+ * 响应与请求无法再按位置对应；</br>
+ * 缓冲区满时阻塞生产者，直到有批次完成
+ *
+ * @author dev
+ *
+ */
+public class BulkWriter implements Closeable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(BulkWriter.class);
+
+	private final BulkProcessor processor;
+	private final Semaphore buffered;
+	private final int maxBufferedActions;
+	private final MetricsListener metricsListener;
+	private final String index;
+	private final BackoffPolicy backoffPolicy;
+	private final ScheduledExecutorService retries;
+
+	/**
+	 * 批次开始提交的时间，用于记录耗时
+	 */
+	private final ConcurrentHashMap<Long, Long> starts = new ConcurrentHashMap<Long, Long>();
+
+	public BulkWriter(Client client, String name, int bulkActions, long bulkSizeInBytes, long flushIntervalMillis,
+			int concurrentRequests, int maxBufferedActions, BackoffPolicy backoffPolicy) {
+		this(client, name, bulkActions, bulkSizeInBytes, flushIntervalMillis, concurrentRequests, maxBufferedActions,
+				backoffPolicy, Metrics.getListener(), null);
+	}
+
+	/**
+	 * @param client
+	 * @param name                名称，用于日志
+	 * @param bulkActions         单批次最大文档数
+	 * @param bulkSizeInBytes     单批次最大字节数
+	 * @param flushIntervalMillis 定时提交间隔，小于等于 0 表示不定时提交
+	 * @param concurrentRequests  同时在途的批次数
+	 * @param maxBufferedActions  缓冲区最多容纳的未完成写请求数
+	 * @param backoffPolicy       条目被拒绝时的重试策略，每个条目单独计算退避
+	 * @param metricsListener     记录批次的耗时、字节数、拒绝和重试次数
+	 * @param index               记录指标时使用的索引名
+	 */
+	public BulkWriter(Client client, final String name, int bulkActions, long bulkSizeInBytes,
+			long flushIntervalMillis, int concurrentRequests, int maxBufferedActions, BackoffPolicy backoffPolicy,
+			MetricsListener metricsListener, String index) {
+		this.maxBufferedActions = maxBufferedActions;
+		this.buffered = new Semaphore(maxBufferedActions);
+		this.metricsListener = metricsListener;
+		this.index = index;
+		this.backoffPolicy = backoffPolicy;
+		this.retries = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, name + "-bulk-retry");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		BulkProcessor.Builder builder = BulkProcessor.builder(client, new BulkProcessor.Listener() {
+
+			@Override
+			public void beforeBulk(long executionId, BulkRequest request) {
+				LOGGER.debug("{} 提交批次 {}，文档数：{}", name, executionId, request.numberOfActions());
+				starts.put(executionId, System.nanoTime());
+			}
+
+			@Override
+			public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
+				record(executionId, request, false);
+				int rejections = Metrics.getRejections(response);
+				for (int i = 0; i < rejections; i++) {
+					BulkWriter.this.metricsListener.onRejection(MetricsListener.BULK, BulkWriter.this.index);
+				}
+				// 未使用 BulkProcessor 的重试，响应的条目与请求一一对应
+				BulkItemResponse[] items = response.getItems();
+				List<Object> payloads = request.payloads();
+				boolean retried = false;
+				for (int i = 0; i < payloads.size(); i++) {
+					BulkItemResponse item = items[i];
+					if (item.isFailed() && item.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS
+							&& retry(request.requests().get(i), payloads.get(i))) {
+						retried = true;
+					} else {
+						complete(payloads.get(i), item, null);
+					}
+				}
+				if (retried) {
+					BulkWriter.this.metricsListener.onRetry(MetricsListener.BULK, BulkWriter.this.index);
+				}
+				if (response.hasFailures()) {
+					LOGGER.warn("{} 批次 {} 部分失败：{}", name, executionId, response.buildFailureMessage());
+				}
+			}
+
+			@Override
+			public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
+				LOGGER.error(String.format("%s 批次 %s 提交失败", name, executionId), failure);
+				record(executionId, request, true);
+				boolean rejected = Metrics.isRejected(failure);
+				if (rejected) {
+					BulkWriter.this.metricsListener.onRejection(MetricsListener.BULK, BulkWriter.this.index);
+				}
+				List<Object> payloads = request.payloads();
+				boolean retried = false;
+				for (int i = 0; i < payloads.size(); i++) {
+					if (rejected && retry(request.requests().get(i), payloads.get(i))) {
+						retried = true;
+					} else {
+						complete(payloads.get(i), null, failure);
+					}
+				}
+				if (retried) {
+					BulkWriter.this.metricsListener.onRetry(MetricsListener.BULK, BulkWriter.this.index);
+				}
+			}
+		}).setName(name).setBulkActions(bulkActions).setBulkSize(new ByteSizeValue(bulkSizeInBytes))
+				.setConcurrentRequests(concurrentRequests).setBackoffPolicy(BackoffPolicy.noBackoff());
+		if (flushIntervalMillis > 0) {
+			builder.setFlushInterval(TimeValue.timeValueMillis(flushIntervalMillis));
+		}
+		this.processor = builder.build();
+	}
+
+	/**
+	 * 加入一个写请求（index、update 或 delete），缓冲区满时阻塞
+	 *
+	 * @param request
+	 * @return 该请求在批次中的执行结果
+	 */
+	@SuppressWarnings("rawtypes")
+	public CompletableFuture<BulkItemResponse> add(ActionRequest request) {
+		CompletableFuture<BulkItemResponse> future = new CompletableFuture<BulkItemResponse>();
+		try {
+			buffered.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			future.completeExceptionally(e);
+			return future;
+		}
+		Pending pending = new Pending(future);
+		try {
+			processor.add(request, pending);
+		} catch (RuntimeException e) {
+			complete(pending, null, e);
+		}
+		return future;
+	}
+
+	/**
+	 * 按退避策略延迟后重新加入缓冲区，重试次数用完时返回 false
+	 */
+	@SuppressWarnings("rawtypes")
+	private boolean retry(final ActionRequest request, Object payload) {
+		if (!(payload instanceof Pending)) {
+			return false;
+		}
+		final Pending pending = (Pending) payload;
+		if (pending.backoff == null) {
+			pending.backoff = backoffPolicy.iterator();
+		}
+		if (!pending.backoff.hasNext()) {
+			return false;
+		}
+		try {
+			retries.schedule(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						processor.add(request, pending);
+					} catch (RuntimeException e) {
+						complete(pending, null, e);
+					}
+				}
+			}, pending.backoff.next().millis(), TimeUnit.MILLISECONDS);
+		} catch (RuntimeException e) {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * 立即提交缓冲区中的请求
+	 */
+	public void flush() {
+		processor.flush();
+	}
+
+	/**
+	 * 提交剩余请求并等待在途批次完成
+	 *
+	 * @param timeout
+	 * @param unit
+	 * @return 在超时前全部完成返回 true
+	 */
+	public boolean awaitClose(long timeout, TimeUnit unit) {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		try {
+			// 等待中的重试会重新加入缓冲区，全部完成前持续提交
+			while (getPending() > 0 && System.nanoTime() < deadline) {
+				processor.flush();
+				Thread.sleep(10);
+			}
+			boolean closed = processor.awaitClose(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+			return closed && getPending() == 0;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} finally {
+			retries.shutdown();
+		}
+	}
+
+	/**
+	 * 提交剩余请求后立即关闭，之后到期的重试以失败结束
+	 */
+	@Override
+	public void close() {
+		processor.close();
+		retries.shutdown();
+	}
+
+	/**
+	 * 当前缓冲区中未完成的写请求数
+	 *
+	 * @return
+	 */
+	public int getPending() {
+		return maxBufferedActions - buffered.availablePermits();
+	}
+
+	private void record(long executionId, BulkRequest request, boolean failed) {
+		Long start = starts.remove(executionId);
+		if (start != null) {
+			metricsListener.onRequest(MetricsListener.BULK, index, System.nanoTime() - start,
+					request.estimatedSizeInBytes(), request.numberOfActions(), failed);
+		}
+	}
+
+	private void complete(Object payload, BulkItemResponse item, Throwable failure) {
+		if (!(payload instanceof Pending)) {
+			return;
+		}
+		buffered.release();
+		CompletableFuture<BulkItemResponse> future = ((Pending) payload).future;
+		if (failure != null) {
+			future.completeExceptionally(failure);
+		} else {
+			future.complete(item);
+		}
+	}
+
+	/**
+	 * 一个未完成的写请求，重试时沿用同一个退避序列
+	 */
+	private static class Pending {
+		private final CompletableFuture<BulkItemResponse> future;
+		private Iterator<TimeValue> backoff;
+
+		Pending(CompletableFuture<BulkItemResponse> future) {
+			this.future = future;
+		}
+	}
+}
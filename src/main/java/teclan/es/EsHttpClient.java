@@ -0,0 +1,311 @@
+package teclan.es;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+import teclan.es.metrics.Metrics;
+import teclan.es.metrics.MetricsListener;
+
+/**
+ * 访问 ES HTTP 接口的客户端
+ *
+ * 请求在所有配置的节点间轮询，以下情况依次换下一个节点重试：</br>
+ * 连接失败（请求尚未发出）；幂等的 GET、HEAD、PUT、DELETE 请求的任意 IO 异常；节点返回 503 或 429。</br>
+ * POST 请求发出后的读超时等异常不重试，避免 _bulk 等非幂等请求在另一个节点上重复执行；</br>
+ * 连接复用共享的连接池，超过阈值的请求体以 gzip 压缩发送，响应体读取后即关闭
+ *
+ * @author dev
+ *
+ */
+public class EsHttpClient {
+	private static final Logger LOGGER = LoggerFactory.getLogger(EsHttpClient.class);
+	private static final MediaType MEDIA_TYPE = MediaType.parse("application/json; charset=utf-8");
+
+	private final String[] nodes;
+	private final OkHttpClient client;
+	private final long gzipThreshold;
+	private final AtomicInteger next = new AtomicInteger();
+
+	/**
+	 * @param ips
+	 * @param ports
+	 * @param maxRequests   同时进行的异步请求数上限，同时也是每个节点的上限
+	 * @param gzipThreshold 请求体超过该字节数时压缩，小于等于 0 表示不压缩；服务端需要配置 http.compression: true
+	 */
+	public EsHttpClient(String[] ips, int[] ports, int maxRequests, long gzipThreshold) {
+		this.nodes = new String[ips.length];
+		for (int i = 0; i < ips.length; i++) {
+			nodes[i] = String.format("http://%s:%s", ips[i], ports[i]);
+		}
+		this.gzipThreshold = gzipThreshold;
+
+		Dispatcher dispatcher = new Dispatcher();
+		dispatcher.setMaxRequests(maxRequests);
+		dispatcher.setMaxRequestsPerHost(maxRequests);
+		this.client = new OkHttpClient.Builder().dispatcher(dispatcher)
+				.connectionPool(new ConnectionPool(maxRequests, 5, TimeUnit.MINUTES))
+				.connectTimeout(5, TimeUnit.SECONDS).readTimeout(60, TimeUnit.SECONDS)
+				.writeTimeout(60, TimeUnit.SECONDS).build();
+	}
+
+	/**
+	 * 同步请求，可重试的失败换节点重试，所有节点都失败时抛出最后一次的异常，都返回 503 或 429 时返回最后一次的结果
+	 *
+	 * @param method GET、HEAD、POST、PUT、DELETE
+	 * @param path   以 / 开头的路径
+	 * @param json   请求体，可为 null
+	 * @return
+	 * @throws IOException
+	 */
+	public Result execute(String method, String path, String json) throws IOException {
+		return execute(client, method, path, json);
+	}
+
+	/**
+	 * 同步请求，使用单独的读超时，用于 _reindex 等耗时较长的请求
+	 *
+	 * @param method
+	 * @param path
+	 * @param json
+	 * @param readTimeoutMillis
+	 * @return
+	 * @throws IOException
+	 */
+	public Result execute(String method, String path, String json, long readTimeoutMillis) throws IOException {
+		return execute(client.newBuilder().readTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS).build(), method,
+				path, json);
+	}
+
+	private Result execute(OkHttpClient client, String method, String path, String json) throws IOException {
+		long begin = System.nanoTime();
+		int start = next.getAndIncrement();
+		IOException last = null;
+		for (int i = 0; i < nodes.length; i++) {
+			String node = nodes[Math.abs((start + i) % nodes.length)];
+			Response response = null;
+			try {
+				if (i > 0) {
+					Metrics.getListener().onRetry(MetricsListener.HTTP, getIndex(path));
+				}
+				response = client.newCall(buildRequest(node, method, path, json)).execute();
+				Result result = new Result(response.code(), response.body().string());
+				if (isUnavailable(result.getCode()) && i + 1 < nodes.length) {
+					LOGGER.warn("请求 {}{} 返回 {}，换下一个节点", node, path, result.getCode());
+					continue;
+				}
+				record(begin, path, json, result);
+				return result;
+			} catch (IOException e) {
+				LOGGER.warn("请求 {}{} 失败，{}", node, path, e.getMessage());
+				last = e;
+				if (!isRetryable(method, e)) {
+					break;
+				}
+			} finally {
+				if (response != null) {
+					response.close();
+				}
+			}
+		}
+		record(begin, path, json, null);
+		throw last;
+	}
+
+	/**
+	 * 异步请求，不占用调用线程，重试规则与同步请求相同
+	 *
+	 * @param method
+	 * @param path
+	 * @param json
+	 * @return
+	 */
+	public CompletableFuture<Result> executeAsync(String method, final String path, final String json) {
+		final long begin = System.nanoTime();
+		CompletableFuture<Result> future = new CompletableFuture<Result>();
+		enqueue(future, next.getAndIncrement(), 0, method, path, json);
+		return future.whenComplete(new BiConsumer<Result, Throwable>() {
+
+			@Override
+			public void accept(Result result, Throwable failure) {
+				record(begin, path, json, result);
+			}
+		});
+	}
+
+	private void enqueue(final CompletableFuture<Result> future, final int start, final int attempt,
+			final String method, final String path, final String json) {
+		final String node = nodes[Math.abs((start + attempt) % nodes.length)];
+		Request request;
+		try {
+			request = buildRequest(node, method, path, json);
+		} catch (IOException e) {
+			future.completeExceptionally(e);
+			return;
+		}
+		client.newCall(request).enqueue(new Callback() {
+
+			@Override
+			public void onResponse(Call call, Response response) {
+				Result result;
+				try {
+					result = new Result(response.code(), response.body().string());
+				} catch (IOException e) {
+					future.completeExceptionally(e);
+					return;
+				} finally {
+					response.close();
+				}
+				if (isUnavailable(result.getCode()) && attempt + 1 < nodes.length) {
+					LOGGER.warn("请求 {}{} 返回 {}，换下一个节点", node, path, result.getCode());
+					Metrics.getListener().onRetry(MetricsListener.HTTP, getIndex(path));
+					enqueue(future, start, attempt + 1, method, path, json);
+				} else {
+					future.complete(result);
+				}
+			}
+
+			@Override
+			public void onFailure(Call call, IOException e) {
+				LOGGER.warn("请求 {}{} 失败，{}", node, path, e.getMessage());
+				if (attempt + 1 < nodes.length && isRetryable(method, e)) {
+					Metrics.getListener().onRetry(MetricsListener.HTTP, getIndex(path));
+					enqueue(future, start, attempt + 1, method, path, json);
+				} else {
+					future.completeExceptionally(e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * 节点暂时无法处理请求（503 服务不可用、429 队列已满），请求没有被执行，可以换节点重试
+	 */
+	static boolean isUnavailable(int code) {
+		return code == 503 || code == 429;
+	}
+
+	/**
+	 * IO 异常后能否换节点重试：幂等的请求总是可以，其他请求只有连接阶段失败、确定没有发出时才可以
+	 */
+	static boolean isRetryable(String method, IOException e) {
+		if ("GET".equals(method) || "HEAD".equals(method) || "PUT".equals(method) || "DELETE".equals(method)) {
+			return true;
+		}
+		return e instanceof ConnectException || e instanceof NoRouteToHostException
+				|| e instanceof UnknownHostException
+				|| (e instanceof SocketTimeoutException && "connect timed out".equals(e.getMessage()));
+	}
+
+	/**
+	 * 记录一次请求，字节数为请求体和响应体的字符数之和，result 为 null 表示请求失败
+	 */
+	private static void record(long begin, String path, String json, Result result) {
+		MetricsListener listener = Metrics.getListener();
+		String index = getIndex(path);
+		long bytes = (json == null ? 0 : json.length()) + (result == null ? 0 : result.getBody().length());
+		if (result != null && result.getCode() == 429) {
+			listener.onRejection(MetricsListener.HTTP, index);
+		}
+		listener.onRequest(MetricsListener.HTTP, index, System.nanoTime() - begin, bytes, 0,
+				result == null || !result.isSuccessful());
+	}
+
+	/**
+	 * 路径中的索引名，如 /index/_bulk 为 index，/_bulk 为 _all
+	 */
+	private static String getIndex(String path) {
+		int end = path.length();
+		for (int i = 1; i < path.length(); i++) {
+			char c = path.charAt(i);
+			if (c == '/' || c == '?') {
+				end = i;
+				break;
+			}
+		}
+		String index = path.substring(1, end);
+		return index.isEmpty() || index.charAt(0) == '_' ? "_all" : index;
+	}
+
+	private Request buildRequest(String node, String method, String path, String json) throws IOException {
+		Request.Builder builder = new Request.Builder().url(node + path);
+		RequestBody body = null;
+		if (json != null) {
+			byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+			if (gzipThreshold > 0 && bytes.length > gzipThreshold) {
+				bytes = gzip(bytes);
+				builder.header("Content-Encoding", "gzip");
+			}
+			body = RequestBody.create(MEDIA_TYPE, bytes);
+		} else if ("POST".equals(method) || "PUT".equals(method)) {
+			body = RequestBody.create(MEDIA_TYPE, new byte[0]);
+		}
+		return builder.method(method, body).build();
+	}
+
+	private static byte[] gzip(byte[] bytes) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+		GZIPOutputStream gzip = new GZIPOutputStream(out);
+		try {
+			gzip.write(bytes);
+		} finally {
+			gzip.close();
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * 关闭连接池和异步请求线程
+	 */
+	public void close() {
+		client.dispatcher().executorService().shutdown();
+		client.connectionPool().evictAll();
+	}
+
+	/**
+	 * 请求结果
+	 */
+	public static class Result {
+		private final int code;
+		private final String body;
+
+		public Result(int code, String body) {
+			this.code = code;
+			this.body = body;
+		}
+
+		public int getCode() {
+			return code;
+		}
+
+		public String getBody() {
+			return body;
+		}
+
+		public boolean isSuccessful() {
+			return code >= 200 && code < 300;
+		}
+	}
+}
@@ -0,0 +1,217 @@
+package teclan.es;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequestBuilder;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.client.Client;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import teclan.es.metrics.MetricsListener;
+
+/**
+ * 将短时间窗口内并发的按 id 获取合并为一次 multi-get
+ *
+ * 窗口内第一个请求到达时开始计时，窗口结束或攒够 maxBatchSize 个请求时提交，</br>
+ * 每个请求最多多等待一个窗口的时间；请求都在到达之后才发出，不会返回旧的结果。</br>
+ * 关闭后到达的请求不再合并，直接单独提交
+ *
+ * @author dev
+ *
+ */
+public class GetBatcher implements Closeable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(GetBatcher.class);
+
+	private final Client client;
+	private final long windowMillis;
+	private final int maxBatchSize;
+	private final MetricsListener metricsListener;
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "es-get-batcher");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private List<Pending> batch = new ArrayList<Pending>();
+	private boolean closed;
+
+	/**
+	 * @param client
+	 * @param windowMillis    合并窗口（毫秒）
+	 * @param maxBatchSize    单次 multi-get 的最大文档数
+	 * @param metricsListener
+	 */
+	public GetBatcher(Client client, long windowMillis, int maxBatchSize, MetricsListener metricsListener) {
+		this.client = client;
+		this.windowMillis = windowMillis;
+		this.maxBatchSize = maxBatchSize;
+		this.metricsListener = metricsListener;
+	}
+
+	/**
+	 * 加入当前批次
+	 *
+	 * @param index
+	 * @param type
+	 * @param id
+	 * @return 该文档的获取结果
+	 */
+	public CompletableFuture<GetResponse> get(String index, String type, String id) {
+		Pending pending = new Pending(index, type, id);
+		List<Pending> ready = null;
+		synchronized (this) {
+			if (closed) {
+				ready = new ArrayList<Pending>();
+				ready.add(pending);
+			} else {
+				if (batch.isEmpty()) {
+					final List<Pending> current = batch;
+					scheduler.schedule(new Runnable() {
+
+						@Override
+						public void run() {
+							flush(current);
+						}
+					}, Math.max(0, getWindowMillis()), TimeUnit.MILLISECONDS);
+				}
+				batch.add(pending);
+				if (batch.size() >= getMaxBatchSize()) {
+					ready = batch;
+					batch = new ArrayList<Pending>();
+				}
+			}
+		}
+		if (ready != null) {
+			submit(ready);
+		}
+		return pending.future;
+	}
+
+	/**
+	 * 合并窗口（毫秒），每个批次开始时读取，子类可覆盖以动态调整
+	 *
+	 * @return
+	 */
+	protected long getWindowMillis() {
+		return windowMillis;
+	}
+
+	/**
+	 * 单次 multi-get 的最大文档数，每次加入请求时读取，子类可覆盖以动态调整
+	 *
+	 * @return
+	 */
+	protected int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	/**
+	 * 发送一次 multi-get，默认直接发送并记录指标，子类可覆盖
+	 *
+	 * @param index   批次中第一个请求的索引
+	 * @param builder
+	 * @return
+	 */
+	protected CompletableFuture<MultiGetResponse> execute(String index, MultiGetRequestBuilder builder) {
+		return ActionFutures.execute(metricsListener, MetricsListener.MGET, index, builder);
+	}
+
+	/**
+	 * 窗口到期，提交仍是当前批次的请求；已因攒满而提交的批次不再重复提交
+	 */
+	private void flush(List<Pending> scheduled) {
+		synchronized (this) {
+			if (batch != scheduled) {
+				return;
+			}
+			batch = new ArrayList<Pending>();
+		}
+		submit(scheduled);
+	}
+
+	private void submit(final List<Pending> pendings) {
+		MultiGetRequestBuilder builder = client.prepareMultiGet();
+		for (Pending pending : pendings) {
+			builder.add(pending.index, pending.type, pending.id);
+		}
+
+		CompletableFuture<MultiGetResponse> response;
+		try {
+			response = execute(pendings.get(0).index, builder);
+		} catch (RuntimeException e) {
+			fail(pendings, e);
+			return;
+		}
+		response.whenComplete(new BiConsumer<MultiGetResponse, Throwable>() {
+
+			@Override
+			public void accept(MultiGetResponse response, Throwable failure) {
+				if (failure != null) {
+					fail(pendings, failure);
+					return;
+				}
+				MultiGetItemResponse[] items = response.getResponses();
+				for (int i = 0; i < items.length; i++) {
+					CompletableFuture<GetResponse> future = pendings.get(i).future;
+					if (items[i].isFailed()) {
+						future.completeExceptionally(new IllegalStateException(items[i].getFailure().getMessage()));
+					} else {
+						future.complete(items[i].getResponse());
+					}
+				}
+			}
+		});
+	}
+
+	private static void fail(List<Pending> pendings, Throwable e) {
+		LOGGER.error(String.format("合并获取 %s 个文档失败", pendings.size()), e);
+		for (Pending pending : pendings) {
+			pending.future.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * 提交尚未发出的请求并停止定时器
+	 */
+	@Override
+	public void close() {
+		List<Pending> remaining;
+		synchronized (this) {
+			closed = true;
+			remaining = batch;
+			batch = new ArrayList<Pending>();
+		}
+		if (!remaining.isEmpty()) {
+			submit(remaining);
+		}
+		scheduler.shutdown();
+	}
+
+	private static class Pending {
+		private final String index;
+		private final String type;
+		private final String id;
+		private final CompletableFuture<GetResponse> future = new CompletableFuture<GetResponse>();
+
+		Pending(String index, String type, String id) {
+			this.index = index;
+			this.type = type;
+			this.id = id;
+		}
+	}
+}
@@ -0,0 +1,224 @@
+package teclan.es;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.sort.SortBuilder;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+
+import teclan.es.utils.LocalCache;
+
+/**
+ * 分页查询结果缓存
+ *
+ * 缓存键由索引的写入代数、查询条件、排序和分页参数组成，</br>
+ * 写操作通过 {@link #bump(String)} 增加索引的代数，旧的结果不再命中，由 LRU 和存活时间淘汰，无需整体清空；</br>
+ * 写入在索引刷新前对查询不可见，这期间缓存的仍是旧结果，因此刷新完成后需要再增加一次代数：</br>
+ * 合并刷新在刷新完成时调用 {@link #bump(String)}，不主动刷新的写入通过 {@link #bumpAfter(String, long)} 延迟增加。</br>
+ * 缓存的是解析后的结果，命中时直接返回同一个对象，不再重新解析；结果及其中的对象和数组都不可修改，需要修改时请先复制
+ *
+ * @author dev
+ *
+ */
+public class QueryResultCache {
+
+	/**
+	 * 各索引的写入代数，进程内所有 DAO 共享
+	 */
+	private static final ConcurrentMap<String, AtomicLong> GENERATIONS = new ConcurrentHashMap<String, AtomicLong>();
+
+	/**
+	 * 各索引最晚一次延迟增加代数的时间（纳秒）
+	 */
+	private static final ConcurrentMap<String, AtomicLong> DEADLINES = new ConcurrentHashMap<String, AtomicLong>();
+
+	/**
+	 * 已安排了延迟增加代数的索引
+	 */
+	private static final ConcurrentMap<String, Boolean> SCHEDULED = new ConcurrentHashMap<String, Boolean>();
+
+	private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "es-query-cache");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private final LocalCache<JSONObject> cache;
+
+	/**
+	 * @param maxEntries
+	 * @param maxBytes
+	 * @param ttlMillis
+	 */
+	public QueryResultCache(int maxEntries, long maxBytes, long ttlMillis) {
+		this.cache = new LocalCache<JSONObject>(maxEntries, maxBytes, ttlMillis);
+	}
+
+	/**
+	 * 索引有写入时调用，使该索引上已缓存的查询结果不再命中
+	 *
+	 * @param index
+	 */
+	public static void bump(String index) {
+		getGeneration(index).incrementAndGet();
+	}
+
+	/**
+	 * 在 delayMillis 之后再增加一次索引的代数，用于依赖 refresh_interval 自动刷新的写入，</br>
+	 * 使写入可见之前缓存的旧结果不再命中；同一索引同时只安排一次，期间再有写入时顺延
+	 *
+	 * @param index
+	 * @param delayMillis 应不小于索引的 refresh_interval
+	 */
+	public static void bumpAfter(final String index, long delayMillis) {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+		AtomicLong latest = getAtomic(DEADLINES, index);
+		long current;
+		while ((current = latest.get()) - deadline < 0 && !latest.compareAndSet(current, deadline)) {
+		}
+		schedule(index, delayMillis);
+	}
+
+	private static void schedule(final String index, long delayMillis) {
+		if (SCHEDULED.putIfAbsent(index, Boolean.TRUE) != null) {
+			return;
+		}
+		SCHEDULER.schedule(new Runnable() {
+
+			@Override
+			public void run() {
+				SCHEDULED.remove(index);
+				bump(index);
+				// 安排之后又有写入，到最晚的时间再增加一次
+				long remaining = DEADLINES.get(index).get() - System.nanoTime();
+				if (remaining > 0) {
+					schedule(index, TimeUnit.NANOSECONDS.toMillis(remaining) + 1);
+				}
+			}
+		}, delayMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * 生成缓存键，index 可以是逗号分隔的多个索引
+	 *
+	 * @param index
+	 * @param type
+	 * @param currentPage
+	 * @param pageSize
+	 * @param terminateAfter
+	 * @param includes
+	 * @param excludes
+	 * @param query
+	 * @param sorts
+	 * @return
+	 */
+	public static String getKey(String index, String type, int currentPage, int pageSize, int terminateAfter,
+			String[] includes, String[] excludes, QueryBuilder query, SortBuilder... sorts) {
+		StringBuilder key = new StringBuilder();
+		for (String name : index.split(",")) {
+			key.append(name).append('@').append(getGeneration(name).get()).append(',');
+		}
+		key.append('/').append(type).append('/').append(currentPage).append('/').append(pageSize).append('/')
+				.append(terminateAfter).append('/').append(Arrays.toString(includes)).append('/')
+				.append(Arrays.toString(excludes)).append('/').append(query == null ? "null" : query.buildAsBytes().toUtf8());
+		for (SortBuilder sort : sorts) {
+			key.append('/').append(sort.toString());
+		}
+		return key.toString();
+	}
+
+	/**
+	 * 按 id 获取文档时使用的键
+	 *
+	 * @param index
+	 * @param type
+	 * @param id
+	 * @return
+	 */
+	public static String getKey(String index, String type, String id) {
+		return index + '@' + getGeneration(index).get() + '/' + type + '/' + id;
+	}
+
+	/**
+	 * @param key
+	 * @return 不可修改的结果，未命中时返回 null
+	 */
+	public JSONObject get(String key) {
+		return cache.get(key);
+	}
+
+	/**
+	 * 缓存结果的不可修改副本
+	 *
+	 * @param key
+	 * @param result
+	 * @return 放入缓存的副本，与之后命中时返回的对象相同
+	 */
+	public JSONObject put(String key, JSONObject result) {
+		JSONObject frozen = (JSONObject) freeze(result);
+		cache.put(key, frozen, cache.stamp());
+		return frozen;
+	}
+
+	/**
+	 * 缓存统计信息
+	 *
+	 * @return
+	 * @see LocalCache#getStats()
+	 */
+	public JSONObject getStats() {
+		return cache.getStats();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Object freeze(Object value) {
+		if (value instanceof Map) {
+			Map<String, Object> map = new LinkedHashMap<String, Object>();
+			for (Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet()) {
+				map.put(entry.getKey(), freeze(entry.getValue()));
+			}
+			return new JSONObject(Collections.unmodifiableMap(map));
+		}
+		if (value instanceof List) {
+			List<Object> list = new JSONArray();
+			for (Object item : (List<Object>) value) {
+				list.add(freeze(item));
+			}
+			return new JSONArray(Collections.unmodifiableList(list));
+		}
+		return value;
+	}
+
+	private static AtomicLong getGeneration(String index) {
+		return getAtomic(GENERATIONS, index);
+	}
+
+	private static AtomicLong getAtomic(ConcurrentMap<String, AtomicLong> map, String index) {
+		AtomicLong value = map.get(index);
+		if (value == null) {
+			AtomicLong created = new AtomicLong();
+			value = map.putIfAbsent(index, created);
+			if (value == null) {
+				value = created;
+			}
+		}
+		return value;
+	}
+}
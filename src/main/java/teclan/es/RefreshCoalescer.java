@@ -0,0 +1,147 @@
+package teclan.es;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.admin.indices.refresh.RefreshResponse;
+import org.elasticsearch.client.Client;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 合并刷新请求，同一索引在一个时间窗口内无论有多少次写操作，最多发起一次 _refresh；</br>
+ * 刷新结束后增加索引在 {@link QueryResultCache} 中的代数，刷新前缓存的旧结果不再命中。</br>
+ * 每个客户端（集群）共享一个实例（见 {@link #get(Client)}），操作同一索引的多个 DAO 合并在一起；</br>
+ * 所有实例共用一个定时线程，关闭客户端前调用 {@link #close(Client)} 立即执行尚未发出的刷新
+ *
+ * @author dev
+ *
+ */
+public class RefreshCoalescer {
+	private static final Logger LOGGER = LoggerFactory.getLogger(RefreshCoalescer.class);
+
+	private static final ConcurrentMap<Client, RefreshCoalescer> SHARED = new ConcurrentHashMap<Client, RefreshCoalescer>();
+	private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "es-refresh-coalescer");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private final Client client;
+	private final ConcurrentMap<String, Boolean> scheduled = new ConcurrentHashMap<String, Boolean>();
+
+	/**
+	 * 一般通过 {@link #get(Client)} 获取共享实例，单独创建的实例只合并经由它发出的刷新
+	 *
+	 * @param client
+	 */
+	public RefreshCoalescer(Client client) {
+		this.client = client;
+	}
+
+	/**
+	 * 客户端对应的共享实例
+	 *
+	 * @param client
+	 * @return
+	 */
+	public static RefreshCoalescer get(Client client) {
+		RefreshCoalescer coalescer = SHARED.get(client);
+		if (coalescer == null) {
+			coalescer = SHARED.computeIfAbsent(client, new Function<Client, RefreshCoalescer>() {
+
+				@Override
+				public RefreshCoalescer apply(Client client) {
+					return new RefreshCoalescer(client);
+				}
+			});
+		}
+		return coalescer;
+	}
+
+	/**
+	 * 移除客户端对应的共享实例，并立即执行其尚未发出的刷新
+	 *
+	 * @param client
+	 */
+	public static void close(Client client) {
+		RefreshCoalescer coalescer = SHARED.remove(client);
+		if (coalescer != null) {
+			coalescer.close();
+		}
+	}
+
+	/**
+	 * 请求刷新索引，窗口内已有待执行的刷新时直接返回
+	 *
+	 * @param index
+	 * @param windowMillis 时间窗口（毫秒），由窗口内第一个请求决定
+	 */
+	public void requestRefresh(final String index, long windowMillis) {
+		if (scheduled.putIfAbsent(index, Boolean.TRUE) != null) {
+			return;
+		}
+		SCHEDULER.schedule(new Runnable() {
+
+			@Override
+			public void run() {
+				if (scheduled.remove(index) != null) {
+					refresh(index);
+				}
+			}
+		}, windowMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * 正在等待窗口结束的索引数
+	 *
+	 * @return
+	 */
+	public int getPending() {
+		return scheduled.size();
+	}
+
+	/**
+	 * 立即执行尚未发出的刷新
+	 */
+	public void close() {
+		for (String index : scheduled.keySet()) {
+			if (scheduled.remove(index) != null) {
+				refresh(index);
+			}
+		}
+	}
+
+	private void refresh(final String index) {
+		try {
+			client.admin().indices().prepareRefresh(index).execute(new ActionListener<RefreshResponse>() {
+
+				@Override
+				public void onResponse(RefreshResponse response) {
+					LOGGER.debug("索引 {} 刷新完成", index);
+					QueryResultCache.bump(index);
+				}
+
+				@Override
+				public void onFailure(Throwable e) {
+					LOGGER.error(String.format("索引 %s 刷新失败", index), e);
+					QueryResultCache.bump(index);
+				}
+			});
+		} catch (RuntimeException e) {
+			// 客户端已关闭等情况
+			LOGGER.error(String.format("索引 %s 刷新失败", index), e);
+			QueryResultCache.bump(index);
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package teclan.es;
+
+/**
+ * 写操作后的索引刷新策略
+ * 
+ * @author dev
+ *
+ */
+public enum RefreshPolicy {
+	/**
+	 * 不主动刷新，依赖索引自身的 refresh_interval
+	 */
+	NONE,
+	/**
+	 * 每次写操作后立即刷新
+	 */
+	IMMEDIATE,
+	/**
+	 * 延迟合并刷新，同一索引在一个时间窗口内最多刷新一次
+	 */
+	DEFERRED
+}
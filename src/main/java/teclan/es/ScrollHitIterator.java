@@ -0,0 +1,120 @@
+package teclan.es;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.SearchHit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import teclan.es.metrics.Metrics;
+import teclan.es.metrics.MetricsListener;
+
+/**
+ * 以滚动查询逐批遍历结果，内存中只保留当前批次的文档，</br>
+ * 遍历完成或调用 {@link #close()} 时释放滚动上下文
+ *
+ * @author dev
+ *
+ */
+public class ScrollHitIterator implements Iterator<SearchHit>, Closeable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ScrollHitIterator.class);
+
+	private final Client client;
+	private final TimeValue keepAlive;
+	private final SearchRequestBuilder searchRequestBuilder;
+	private final MetricsListener metricsListener;
+	private final String index;
+
+	private String scrollId;
+	private SearchHit[] hits;
+	private int position;
+	private boolean finished;
+
+	/**
+	 * @param client
+	 * @param searchRequestBuilder 已设置查询条件、排序和批次大小的查询，首次调用 {@link #hasNext()} 时才执行
+	 * @param keepAliveMillis      两个批次之间滚动上下文保留的时间（毫秒）
+	 */
+	public ScrollHitIterator(Client client, SearchRequestBuilder searchRequestBuilder, long keepAliveMillis) {
+		this(client, searchRequestBuilder, keepAliveMillis, Metrics.getListener(), null);
+	}
+
+	/**
+	 * @param client
+	 * @param searchRequestBuilder
+	 * @param keepAliveMillis
+	 * @param metricsListener      记录每个批次的耗时和文档数
+	 * @param index                记录指标时使用的索引名
+	 */
+	public ScrollHitIterator(Client client, SearchRequestBuilder searchRequestBuilder, long keepAliveMillis,
+			MetricsListener metricsListener, String index) {
+		this.client = client;
+		this.keepAlive = TimeValue.timeValueMillis(keepAliveMillis);
+		this.searchRequestBuilder = searchRequestBuilder;
+		this.metricsListener = metricsListener;
+		this.index = index;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (finished) {
+			return false;
+		}
+		if (hits != null && position < hits.length) {
+			return true;
+		}
+
+		SearchResponse response;
+		if (hits == null) {
+			response = Metrics.execute(metricsListener, MetricsListener.SEARCH, index,
+					searchRequestBuilder.setScroll(keepAlive));
+		} else {
+			response = Metrics.execute(metricsListener, MetricsListener.SCROLL, index,
+					client.prepareSearchScroll(scrollId).setScroll(keepAlive));
+		}
+		scrollId = response.getScrollId();
+		hits = response.getHits().getHits();
+		position = 0;
+
+		if (hits.length == 0) {
+			close();
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public SearchHit next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return hits[position++];
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void close() {
+		if (finished) {
+			return;
+		}
+		finished = true;
+		hits = null;
+		if (scrollId != null) {
+			try {
+				client.prepareClearScroll().addScrollId(scrollId).execute().actionGet();
+			} catch (Exception e) {
+				LOGGER.error(e.getMessage(), e);
+			}
+		}
+	}
+}
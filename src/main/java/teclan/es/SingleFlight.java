@@ -0,0 +1,59 @@
+package teclan.es;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 合并并发的相同读请求
+ *
+ * 同一个键同时只有一个调用真正执行，其余调用等待并共享它的结果或异常；</br>
+ * 调用结束即移除，之后到达的调用重新执行，因此不会返回比调用开始时更旧的结果。</br>
+ * 键中需要包含索引的写入代数（见 {@link QueryResultCache#getKey}），写入后到达的读请求不会合并到写入前开始的请求上
+ *
+ * @author dev
+ *
+ */
+public class SingleFlight<V> {
+
+	private final ConcurrentMap<String, CompletableFuture<V>> inFlight = new ConcurrentHashMap<String, CompletableFuture<V>>();
+
+	/**
+	 * 执行 loader，相同 key 的调用正在进行时等待其结果
+	 *
+	 * @param key
+	 * @param loader
+	 * @return 共享的结果，调用方不应修改
+	 */
+	public V execute(String key, Callable<V> loader) {
+		CompletableFuture<V> future = new CompletableFuture<V>();
+		CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+		if (existing != null) {
+			return ActionFutures.join(existing);
+		}
+
+		try {
+			V value = loader.call();
+			future.complete(value);
+			return value;
+		} catch (Error e) {
+			future.completeExceptionally(e);
+			throw e;
+		} catch (Exception e) {
+			future.completeExceptionally(e);
+			throw e instanceof RuntimeException ? (RuntimeException) e : new IllegalStateException(e);
+		} finally {
+			inFlight.remove(key, future);
+		}
+	}
+
+	/**
+	 * 正在执行的调用数
+	 *
+	 * @return
+	 */
+	public int getInFlight() {
+		return inFlight.size();
+	}
+}
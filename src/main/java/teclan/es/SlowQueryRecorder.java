@@ -0,0 +1,180 @@
+package teclan.es;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.elasticsearch.action.ActionRequestBuilder;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.search.profile.CollectorResult;
+import org.elasticsearch.search.profile.ProfileShardResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+
+import teclan.es.utils.FileAppender;
+
+/**
+ * 客户端慢查询记录
+ *
+ * 记录保存在固定容量的环形缓冲区中，写满后覆盖最早的记录，可随时导出到文件；</br>
+ * 每条记录包含操作、索引、类型、from/size、序列化后的查询、ES 返回的 took 与客户端往返耗时、</br>
+ * 分片数，请求开启了 profile 时还包含每个分片的耗时分解
+ *
+ * @author dev
+ *
+ */
+public class SlowQueryRecorder {
+	private static final Logger LOGGER = LoggerFactory.getLogger(SlowQueryRecorder.class);
+
+	private final AtomicReferenceArray<JSONObject> entries;
+	private final AtomicLong position = new AtomicLong();
+
+	/**
+	 * @param capacity 最多保留的记录数，必须大于 0
+	 */
+	public SlowQueryRecorder(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		}
+		this.entries = new AtomicReferenceArray<JSONObject>(capacity);
+	}
+
+	/**
+	 * 记录一次慢查询
+	 *
+	 * @param operation      操作名
+	 * @param index
+	 * @param builder        已执行的请求
+	 * @param response
+	 * @param roundTripNanos 客户端观察到的往返耗时（纳秒）
+	 * @return 记录的内容
+	 */
+	public JSONObject record(String operation, String index, ActionRequestBuilder<?, ?, ?> builder,
+			ActionResponse response, long roundTripNanos) throws IOException {
+		JSONObject entry = new JSONObject(true);
+		entry.put("time", System.currentTimeMillis());
+		entry.put("operation", operation);
+		entry.put("index", index);
+		entry.put("roundTrip", roundTripNanos / 1000000.0);
+
+		if (builder instanceof SearchRequestBuilder) {
+			SearchRequest request = ((SearchRequestBuilder) builder).request();
+			String source = builder.toString();
+			entry.put("types", request.types());
+			JSONObject query = JSON.parseObject(source);
+			if (query != null) {
+				entry.put("from", query.containsKey("from") ? query.getIntValue("from") : 0);
+				entry.put("size", query.containsKey("size") ? query.getIntValue("size") : 10);
+			}
+			entry.put("query", source);
+		} else {
+			entry.put("query", builder.request().toString());
+		}
+
+		if (response instanceof SearchResponse) {
+			SearchResponse searchResponse = (SearchResponse) response;
+			entry.put("took", searchResponse.getTookInMillis());
+			entry.put("hits", searchResponse.getHits().getHits().length);
+			entry.put("totalShards", searchResponse.getTotalShards());
+			entry.put("successfulShards", searchResponse.getSuccessfulShards());
+			entry.put("failedShards", searchResponse.getFailedShards());
+			Map<String, List<ProfileShardResult>> profile = searchResponse.getProfileResults();
+			if (profile != null && !profile.isEmpty()) {
+				entry.put("shards", getShards(profile));
+			}
+		}
+
+		entries.set((int) (position.getAndIncrement() % entries.length()), entry);
+		LOGGER.warn("慢查询 {} {}，耗时 {} 毫秒，ES 耗时 {} 毫秒", operation, index, entry.get("roundTrip"),
+				entry.get("took"));
+		return entry;
+	}
+
+	/**
+	 * 每个分片的耗时分解：rewrite、collector（毫秒），以及 ES profile 输出的查询树 queries
+	 */
+	private static JSONObject getShards(Map<String, List<ProfileShardResult>> profile) throws IOException {
+		JSONObject shards = new JSONObject(true);
+		for (Map.Entry<String, List<ProfileShardResult>> shard : profile.entrySet()) {
+			JSONArray results = new JSONArray();
+			for (ProfileShardResult result : shard.getValue()) {
+				XContentBuilder builder = XContentFactory.jsonBuilder().startObject();
+				result.toXContent(builder, ToXContent.EMPTY_PARAMS);
+				builder.endObject();
+
+				JSONObject json = new JSONObject(true);
+				json.put("rewrite", toMillis(result.getRewriteTime()));
+				CollectorResult collector = result.getCollectorResult();
+				json.put("collector", collector == null ? null : toMillis(collector.getTime()));
+				json.put("queries", JSON.parseObject(builder.string()).get("query"));
+				results.add(json);
+			}
+			shards.put(shard.getKey(), results);
+		}
+		return shards;
+	}
+
+	private static double toMillis(long nanos) {
+		return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	/**
+	 * 当前保留的记录，从早到晚排列
+	 *
+	 * @return
+	 */
+	public JSONArray getEntries() {
+		JSONArray result = new JSONArray();
+		long end = position.get();
+		for (long i = Math.max(0, end - entries.length()); i < end; i++) {
+			JSONObject entry = entries.get((int) (i % entries.length()));
+			if (entry != null) {
+				result.add(entry);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 将当前保留的记录以每行一个 JSON 的格式追加到文件
+	 *
+	 * @param fileName
+	 * @return 写入的记录数
+	 * @throws IOException
+	 */
+	public int dump(String fileName) throws IOException {
+		JSONArray entries = getEntries();
+		FileAppender appender = new FileAppender(fileName, 64 * 1024, 0, false);
+		try {
+			for (int i = 0; i < entries.size(); i++) {
+				appender.append(entries.getJSONObject(i).toJSONString());
+				appender.append("\n");
+			}
+		} finally {
+			appender.close();
+		}
+		return entries.size();
+	}
+
+	/**
+	 * 清空记录
+	 */
+	public void clear() {
+		for (int i = 0; i < entries.length(); i++) {
+			entries.set(i, null);
+		}
+	}
+}
@@ -2,42 +2,202 @@ package teclan.es;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.transport.InetSocketTransportAddress;
+import org.elasticsearch.common.transport.TransportAddress;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * TransportClient 注册表
+ *
+ * 同一集群、地址和配置只创建一个客户端；开启嗅探，默认每秒探测一次节点，节点故障时切换到其他节点；</br>
+ * 后台定时检查已连接的节点，一个都没有时重新解析配置的地址并重新连接，JVM 退出时关闭全部客户端
+ *
+ * @author dev
+ *
+ */
 public class TransportClientFactory {
 	private static final Logger LOGGER = LoggerFactory.getLogger(TransportClientFactory.class);
 
-	public static Map<String,TransportClient> CLIENTS = new HashMap<String,TransportClient> () ;
+	/**
+	 * 节点存活检查的间隔（秒）
+	 */
+	private static final long HEALTH_CHECK_INTERVAL = 5;
+
+	/**
+	 * 键为集群名、地址和额外配置
+	 */
+	public static final ConcurrentHashMap<String, TransportClient> CLIENTS = new ConcurrentHashMap<String, TransportClient>();
+
+	/**
+	 * 客户端创建时配置的主机名和端口，重新连接时重新解析
+	 */
+	private static final ConcurrentHashMap<TransportClient, String[]> HOSTS = new ConcurrentHashMap<TransportClient, String[]>();
+	private static final ConcurrentHashMap<TransportClient, int[]> PORTS = new ConcurrentHashMap<TransportClient, int[]>();
+
+	private static ScheduledExecutorService HEALTH_CHECKER;
 
 	public static TransportClient get(String clusterName, String[] ips, int[] ports) {
-		
-		if(CLIENTS.containsKey(clusterName)) {
-			return CLIENTS.get(clusterName);
+		return get(clusterName, ips, ports, Settings.EMPTY);
+	}
+
+	/**
+	 * 获取客户端，不存在时创建
+	 *
+	 * @param clusterName
+	 * @param ips
+	 * @param ports
+	 * @param extra       额外配置，覆盖默认值，常用的有 client.transport.ping_timeout（默认 5s）、</br>
+	 *                    client.transport.nodes_sampler_interval（默认 1s，越小越快发现节点故障）、</br>
+	 *                    transport.netty.worker_count、thread_pool.generic.size 等
+	 * @return
+	 */
+	public static TransportClient get(final String clusterName, final String[] ips, final int[] ports,
+			final Settings extra) {
+		StringBuilder key = new StringBuilder(clusterName);
+		for (int i = 0; i < ips.length; i++) {
+			key.append('|').append(ips[i]).append(':').append(ports[i]);
 		}
+		key.append('|').append(new TreeMap<String, String>(extra.getAsMap()));
+
+		return CLIENTS.computeIfAbsent(key.toString(), new Function<String, TransportClient>() {
+
+			@Override
+			public TransportClient apply(String key) {
+				return build(clusterName, ips, ports, extra);
+			}
+		});
+	}
 
+	private static TransportClient build(String clusterName, String[] ips, int[] ports, Settings extra) {
 		Settings settings = Settings.settingsBuilder().put("cluster.name", clusterName)
 				.put("client.transport.ignore_cluster_name", false).put("client.transport.ping_timeout", "5s")
-				.put("client.transport.sniff", true).build();
-		TransportClient client = null;
-		try {
-			client = TransportClient.builder().settings(settings).build();
-			for (int i = 0; i < ips.length; i++) {
+				.put("client.transport.sniff", true).put("client.transport.nodes_sampler_interval", "1s").put(extra)
+				.build();
+		TransportClient client = TransportClient.builder().settings(settings).build();
+		for (int i = 0; i < ips.length; i++) {
+			try {
 				client.addTransportAddress(
 						new InetSocketTransportAddress(InetAddress.getByName(ips[i]), Integer.valueOf(ports[i])));
+			} catch (UnknownHostException e) {
+				LOGGER.error(e.getMessage(), e);
 			}
-		} catch (UnknownHostException e) {
-			LOGGER.error(e.getMessage(), e);
 		}
-		CLIENTS.put(clusterName, client);
-
+		HOSTS.put(client, ips.clone());
+		PORTS.put(client, ports.clone());
+		startHealthCheck();
+		LOGGER.info("已创建集群 {} 的客户端，已连接节点数：{}", clusterName, client.connectedNodes().size());
 		return client;
 	}
 
+	/**
+	 * 关闭并移除客户端，关闭前执行尚未发出的合并刷新
+	 *
+	 * @param client
+	 */
+	public static void close(TransportClient client) {
+		CLIENTS.values().remove(client);
+		HOSTS.remove(client);
+		PORTS.remove(client);
+		RefreshCoalescer.close(client);
+		client.close();
+	}
+
+	/**
+	 * 关闭全部客户端
+	 */
+	public static void closeAll() {
+		for (TransportClient client : CLIENTS.values()) {
+			close(client);
+		}
+	}
+
+	private static synchronized void startHealthCheck() {
+		if (HEALTH_CHECKER != null) {
+			return;
+		}
+		HEALTH_CHECKER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "es-client-health-check");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		HEALTH_CHECKER.scheduleWithFixedDelay(new Runnable() {
+
+			@Override
+			public void run() {
+				for (TransportClient client : CLIENTS.values()) {
+					try {
+						checkHealth(client);
+					} catch (Exception e) {
+						LOGGER.error(e.getMessage(), e);
+					}
+				}
+			}
+		}, HEALTH_CHECK_INTERVAL, HEALTH_CHECK_INTERVAL, TimeUnit.SECONDS);
+
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				HEALTH_CHECKER.shutdownNow();
+				closeAll();
+			}
+		}, "es-client-shutdown"));
+	}
+
+	/**
+	 * 检查已连接的节点，部分节点不可用时由客户端按 client.transport.nodes_sampler_interval 自动重连；</br>
+	 * 一个节点都没有连上时，重新解析配置的主机名并重新添加全部地址，</br>
+	 * 使地址变化（如节点重建后 IP 改变）或嗅探到的节点全部失效后仍能恢复
+	 *
+	 * @param client
+	 */
+	static void checkHealth(TransportClient client) {
+		List<DiscoveryNode> connected = client.connectedNodes();
+		if (connected.isEmpty()) {
+			LOGGER.warn("没有可用的 ES 节点，重新连接配置的地址：{}", client.transportAddresses());
+			reconnect(client);
+		} else if (connected.size() < client.listedNodes().size()) {
+			LOGGER.warn("部分 ES 节点不可用，已连接：{}，配置：{}", connected, client.listedNodes());
+		}
+	}
+
+	private static void reconnect(TransportClient client) {
+		String[] ips = HOSTS.get(client);
+		int[] ports = PORTS.get(client);
+		if (ips == null || ports == null) {
+			return;
+		}
+		List<TransportAddress> listed = new ArrayList<TransportAddress>(client.transportAddresses());
+		for (TransportAddress address : listed) {
+			client.removeTransportAddress(address);
+		}
+		for (int i = 0; i < ips.length; i++) {
+			try {
+				client.addTransportAddress(
+						new InetSocketTransportAddress(InetAddress.getByName(ips[i]), Integer.valueOf(ports[i])));
+			} catch (UnknownHostException e) {
+				LOGGER.error(e.getMessage(), e);
+			}
+		}
+		LOGGER.info("已重新连接，已连接节点数：{}", client.connectedNodes().size());
+	}
+
 }
@@ -0,0 +1,174 @@
+package teclan.es.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import com.alibaba.fastjson.JSONObject;
+
+/**
+ * 默认的指标实现，按操作和索引分别统计
+ *
+ * 耗时以微秒记录在 HdrHistogram 的 {@link Recorder} 中，记录无锁且不分配内存，</br>
+ * 读取快照时才合并为累计的直方图；计数使用 {@link LongAdder}，适合在生产环境中常开
+ *
+ * @author dev
+ *
+ */
+public class HistogramMetricsListener implements MetricsListener, HistogramMetricsListenerMBean {
+	private static final int SIGNIFICANT_DIGITS = 2;
+
+	private final ConcurrentMap<String, ConcurrentMap<String, OperationMetrics>> metrics = new ConcurrentHashMap<String, ConcurrentMap<String, OperationMetrics>>();
+
+	@Override
+	public void onRequest(String operation, String index, long tookNanos, long bytes, long hits, boolean failed) {
+		OperationMetrics operationMetrics = get(operation, index);
+		operationMetrics.latency.recordValue(Math.max(0, TimeUnit.NANOSECONDS.toMicros(tookNanos)));
+		operationMetrics.count.increment();
+		if (bytes > 0) {
+			operationMetrics.bytes.add(bytes);
+		}
+		if (hits > 0) {
+			operationMetrics.hits.add(hits);
+		}
+		if (failed) {
+			operationMetrics.failures.increment();
+		}
+	}
+
+	@Override
+	public void onRetry(String operation, String index) {
+		get(operation, index).retries.increment();
+	}
+
+	@Override
+	public void onRejection(String operation, String index) {
+		get(operation, index).rejections.increment();
+	}
+
+	private OperationMetrics get(String operation, String index) {
+		ConcurrentMap<String, OperationMetrics> byIndex = metrics.get(operation);
+		if (byIndex == null) {
+			byIndex = metrics.computeIfAbsent(operation,
+					new Function<String, ConcurrentMap<String, OperationMetrics>>() {
+
+						@Override
+						public ConcurrentMap<String, OperationMetrics> apply(String operation) {
+							return new ConcurrentHashMap<String, OperationMetrics>();
+						}
+					});
+		}
+		String key = index == null ? "_all" : index;
+		OperationMetrics operationMetrics = byIndex.get(key);
+		if (operationMetrics == null) {
+			operationMetrics = byIndex.computeIfAbsent(key, new Function<String, OperationMetrics>() {
+
+				@Override
+				public OperationMetrics apply(String index) {
+					return new OperationMetrics();
+				}
+			});
+		}
+		return operationMetrics;
+	}
+
+	/**
+	 * 累计的指标快照
+	 *
+	 * @return {操作:{索引:{count,failures,bytes,hits,retries,rejections,latency:{min,mean,p50,p90,p99,p999,max}}}}，</br>
+	 *         耗时单位为毫秒
+	 */
+	public JSONObject snapshot() {
+		JSONObject snapshot = new JSONObject();
+		for (Map.Entry<String, ConcurrentMap<String, OperationMetrics>> operation : metrics.entrySet()) {
+			JSONObject byIndex = new JSONObject();
+			for (Map.Entry<String, OperationMetrics> index : operation.getValue().entrySet()) {
+				byIndex.put(index.getKey(), index.getValue().snapshot());
+			}
+			snapshot.put(operation.getKey(), byIndex);
+		}
+		return snapshot;
+	}
+
+	@Override
+	public String getSnapshot() {
+		return snapshot().toJSONString();
+	}
+
+	@Override
+	public long getRequestCount() {
+		long count = 0;
+		for (ConcurrentMap<String, OperationMetrics> byIndex : metrics.values()) {
+			for (OperationMetrics operationMetrics : byIndex.values()) {
+				count += operationMetrics.count.sum();
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public long getFailureCount() {
+		long count = 0;
+		for (ConcurrentMap<String, OperationMetrics> byIndex : metrics.values()) {
+			for (OperationMetrics operationMetrics : byIndex.values()) {
+				count += operationMetrics.failures.sum();
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public void reset() {
+		metrics.clear();
+	}
+
+	private static class OperationMetrics {
+		private final Recorder latency = new Recorder(SIGNIFICANT_DIGITS);
+		private final LongAdder count = new LongAdder();
+		private final LongAdder failures = new LongAdder();
+		private final LongAdder bytes = new LongAdder();
+		private final LongAdder hits = new LongAdder();
+		private final LongAdder retries = new LongAdder();
+		private final LongAdder rejections = new LongAdder();
+
+		/**
+		 * 累计的耗时，读取快照时合并
+		 */
+		private final Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+		private Histogram interval;
+
+		synchronized JSONObject snapshot() {
+			interval = latency.getIntervalHistogram(interval);
+			total.add(interval);
+
+			JSONObject latency = new JSONObject(true);
+			latency.put("min", toMillis(total.getTotalCount() == 0 ? 0 : total.getMinValue()));
+			latency.put("mean", total.getMean() / 1000);
+			latency.put("p50", toMillis(total.getValueAtPercentile(50)));
+			latency.put("p90", toMillis(total.getValueAtPercentile(90)));
+			latency.put("p99", toMillis(total.getValueAtPercentile(99)));
+			latency.put("p999", toMillis(total.getValueAtPercentile(99.9)));
+			latency.put("max", toMillis(total.getMaxValue()));
+
+			JSONObject json = new JSONObject(true);
+			json.put("count", count.sum());
+			json.put("failures", failures.sum());
+			json.put("bytes", bytes.sum());
+			json.put("hits", hits.sum());
+			json.put("retries", retries.sum());
+			json.put("rejections", rejections.sum());
+			json.put("latency", latency);
+			return json;
+		}
+
+		private static double toMillis(long micros) {
+			return micros / 1000.0;
+		}
+	}
+}
@@ -0,0 +1,30 @@
+package teclan.es.metrics;
+
+/**
+ * {@link HistogramMetricsListener} 的 JMX 接口
+ *
+ * @author dev
+ *
+ */
+public interface HistogramMetricsListenerMBean {
+
+	/**
+	 * @return {@link HistogramMetricsListener#snapshot()} 的 JSON 字符串
+	 */
+	String getSnapshot();
+
+	/**
+	 * @return 已记录的调用总数
+	 */
+	long getRequestCount();
+
+	/**
+	 * @return 失败的调用总数
+	 */
+	long getFailureCount();
+
+	/**
+	 * 清空已记录的指标
+	 */
+	void reset();
+}
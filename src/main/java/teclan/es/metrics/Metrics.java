@@ -0,0 +1,213 @@
+package teclan.es.metrics;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionRequestBuilder;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.update.UpdateResponse;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.internal.InternalSearchHit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.fastjson.JSONObject;
+
+/**
+ * 全局的指标监听器
+ *
+ * 默认使用 {@link HistogramMetricsListener}，可替换为其他实现或 {@link MetricsListener#NONE}；</br>
+ * 调用 {@link #registerMBean()} 后可通过 JMX 的 teclan.es:type=Metrics 查看
+ *
+ * @author dev
+ *
+ */
+public class Metrics {
+	private static final Logger LOGGER = LoggerFactory.getLogger(Metrics.class);
+	private static final String MBEAN_NAME = "teclan.es:type=Metrics";
+
+	private static final HistogramMetricsListener DEFAULT = new HistogramMetricsListener();
+	private static volatile MetricsListener LISTENER = DEFAULT;
+
+	public static MetricsListener getListener() {
+		return LISTENER;
+	}
+
+	public static void setListener(MetricsListener listener) {
+		LISTENER = listener == null ? MetricsListener.NONE : listener;
+	}
+
+	/**
+	 * 默认实现的指标快照，已替换监听器时返回替换前记录的数据
+	 *
+	 * @return
+	 */
+	public static JSONObject snapshot() {
+		return DEFAULT.snapshot();
+	}
+
+	/**
+	 * 执行请求并记录耗时、文档数和字节数，被拒绝时同时记录一次拒绝
+	 *
+	 * @param listener
+	 * @param operation
+	 * @param index
+	 * @param builder
+	 * @return
+	 */
+	public static <Response extends ActionResponse> Response execute(MetricsListener listener, String operation,
+			String index, ActionRequestBuilder<?, Response, ?> builder) {
+		long start = System.nanoTime();
+		Response response = null;
+		try {
+			response = builder.execute().actionGet();
+			return response;
+		} catch (RuntimeException e) {
+			if (isRejected(e)) {
+				listener.onRejection(operation, index);
+			}
+			throw e;
+		} finally {
+			listener.onRequest(operation, index, System.nanoTime() - start, getBytes(builder.request(), response),
+					getHits(response), response == null);
+		}
+	}
+
+	/**
+	 * 是否为线程池队列已满导致的拒绝（429）
+	 *
+	 * @param e
+	 * @return
+	 */
+	public static boolean isRejected(Throwable e) {
+		return ExceptionsHelper.status(e) == RestStatus.TOO_MANY_REQUESTS;
+	}
+
+	/**
+	 * 批量请求中被拒绝的条目数
+	 *
+	 * @param response
+	 * @return
+	 */
+	public static int getRejections(BulkResponse response) {
+		int rejections = 0;
+		if (response.hasFailures()) {
+			for (BulkItemResponse item : response.getItems()) {
+				if (item.isFailed() && item.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS) {
+					rejections++;
+				}
+			}
+		}
+		return rejections;
+	}
+
+	/**
+	 * 请求和响应的字节数：写请求为请求的字节数，查询和获取为返回的 _source 字节数
+	 *
+	 * @param request
+	 * @param response 请求失败时为 null
+	 * @return
+	 */
+	public static long getBytes(ActionRequest<?> request, ActionResponse response) {
+		return getBytes(request) + getBytes(response);
+	}
+
+	/**
+	 * 写请求的字节数，其他请求返回 0
+	 *
+	 * @param request
+	 * @return
+	 */
+	public static long getBytes(ActionRequest<?> request) {
+		if (request instanceof IndexRequest) {
+			BytesReference source = ((IndexRequest) request).source();
+			return source == null ? 0 : source.length();
+		} else if (request instanceof BulkRequest) {
+			return ((BulkRequest) request).estimatedSizeInBytes();
+		}
+		return 0;
+	}
+
+	/**
+	 * 查询（包括 scroll）、get 和 mget 返回的 _source 字节数，其他响应返回 0；</br>
+	 * 按传输时的原始字节计算，_source 压缩存储时为压缩后的大小，不为统计而解压
+	 *
+	 * @param response
+	 * @return
+	 */
+	public static long getBytes(ActionResponse response) {
+		long bytes = 0;
+		if (response instanceof SearchResponse) {
+			for (SearchHit hit : ((SearchResponse) response).getHits().getHits()) {
+				bytes += length(((InternalSearchHit) hit).internalSourceRef());
+			}
+		} else if (response instanceof GetResponse) {
+			bytes = length(((GetResponse) response).getSourceInternal());
+		} else if (response instanceof MultiGetResponse) {
+			for (MultiGetItemResponse item : ((MultiGetResponse) response).getResponses()) {
+				if (!item.isFailed()) {
+					bytes += length(item.getResponse().getSourceInternal());
+				}
+			}
+		}
+		return bytes;
+	}
+
+	private static long length(BytesReference source) {
+		return source == null ? 0 : source.length();
+	}
+
+	/**
+	 * 返回或写入的文档数
+	 *
+	 * @param response
+	 * @return
+	 */
+	public static long getHits(ActionResponse response) {
+		if (response instanceof SearchResponse) {
+			return ((SearchResponse) response).getHits().getHits().length;
+		} else if (response instanceof GetResponse) {
+			return ((GetResponse) response).isExists() ? 1 : 0;
+		} else if (response instanceof MultiGetResponse) {
+			return ((MultiGetResponse) response).getResponses().length;
+		} else if (response instanceof BulkResponse) {
+			return ((BulkResponse) response).getItems().length;
+		} else if (response instanceof IndexResponse || response instanceof UpdateResponse) {
+			return 1;
+		} else if (response instanceof DeleteResponse) {
+			return ((DeleteResponse) response).isFound() ? 1 : 0;
+		}
+		return 0;
+	}
+
+	/**
+	 * 将默认实现注册到平台 MBeanServer，重复注册时忽略
+	 */
+	public static void registerMBean() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			server.registerMBean(DEFAULT, new ObjectName(MBEAN_NAME));
+		} catch (InstanceAlreadyExistsException e) {
+			LOGGER.debug("{} 已注册", MBEAN_NAME);
+		} catch (Exception e) {
+			LOGGER.error(e.getMessage(), e);
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package teclan.es.metrics;
+
+/**
+ * ES 调用的指标监听器
+ *
+ * 每次调用完成后回调，实现需要线程安全且足够轻量，不能阻塞调用线程；</br>
+ * 默认实现为 {@link HistogramMetricsListener}，通过 {@link Metrics#setListener(MetricsListener)} 替换
+ *
+ * @author dev
+ *
+ */
+public interface MetricsListener {
+
+	String INDEX = "index";
+	String BULK = "bulk";
+	String UPDATE = "update";
+	String DELETE = "delete";
+	String GET = "get";
+	String MGET = "mget";
+	String SEARCH = "search";
+	String COUNT = "count";
+	String SCROLL = "scroll";
+	String REFRESH = "refresh";
+	String PARSE = "parse";
+	String HTTP = "http";
+
+	/**
+	 * 不记录任何指标
+	 */
+	MetricsListener NONE = new MetricsListener() {
+
+		@Override
+		public void onRequest(String operation, String index, long tookNanos, long bytes, long hits,
+				boolean failed) {
+		}
+
+		@Override
+		public void onRetry(String operation, String index) {
+		}
+
+		@Override
+		public void onRejection(String operation, String index) {
+		}
+	};
+
+	/**
+	 * 一次调用完成
+	 *
+	 * @param operation 操作名，见本接口中的常量
+	 * @param index     索引名，无法确定时为 "_all"
+	 * @param tookNanos 调用方观察到的耗时（纳秒）
+	 * @param bytes     请求或响应的字节数，未知时为 0
+	 * @param hits      返回或写入的文档数
+	 * @param failed    是否失败
+	 */
+	void onRequest(String operation, String index, long tookNanos, long bytes, long hits, boolean failed);
+
+	/**
+	 * 一次重试，包括批次被拒绝后的退避重试和 HTTP 请求换节点重试
+	 *
+	 * @param operation
+	 * @param index
+	 */
+	void onRetry(String operation, String index);
+
+	/**
+	 * 一次被拒绝（EsRejectedExecutionException / 429）
+	 *
+	 * @param operation
+	 * @param index
+	 */
+	void onRejection(String operation, String index);
+}
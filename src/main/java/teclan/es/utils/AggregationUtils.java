@@ -0,0 +1,150 @@
+package teclan.es.utils;
+
+import java.io.IOException;
+
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.search.aggregations.Aggregation;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.MultiBucketsAggregation;
+import org.elasticsearch.search.aggregations.bucket.SingleBucketAggregation;
+import org.elasticsearch.search.aggregations.bucket.range.Range;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.metrics.NumericMetricsAggregation;
+import org.elasticsearch.search.aggregations.metrics.cardinality.Cardinality;
+import org.elasticsearch.search.aggregations.metrics.stats.Stats;
+import org.elasticsearch.search.aggregations.metrics.valuecount.ValueCount;
+import org.joda.time.DateTime;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+
+/**
+ * 将 ES 聚合结果转换为紧凑的 JSON 结构，按聚合名称组织：
+ *
+ * <pre>
+ * terms、histogram、date_histogram、range 等多桶聚合：{"buckets":[{"key":..,"count":..,子聚合..}]}，
+ *     terms 额外带 other（未返回的桶的文档数），date_histogram 的 key 为毫秒时间戳并带 keyAsString，
+ *     range 的桶带 from、to
+ * filter 等单桶聚合：{"count":..,子聚合..}
+ * cardinality、value_count：{"value":long}
+ * avg、sum、min、max：{"value":double}，没有文档时为 null
+ * stats：{"count","min","max","avg","sum"}
+ * </pre>
+ *
+ * 其他类型按 ES 原始的 JSON 输出
+ *
+ * @author dev
+ *
+ */
+public class AggregationUtils {
+
+	public static JSONObject toJson(Aggregations aggregations) {
+		JSONObject json = new JSONObject();
+		if (aggregations != null) {
+			putAll(json, aggregations);
+		}
+		return json;
+	}
+
+	public static Object toJson(Aggregation aggregation) {
+		if (aggregation instanceof MultiBucketsAggregation) {
+			return toJson((MultiBucketsAggregation) aggregation);
+		} else if (aggregation instanceof SingleBucketAggregation) {
+			SingleBucketAggregation single = (SingleBucketAggregation) aggregation;
+			JSONObject json = new JSONObject();
+			json.put("count", single.getDocCount());
+			putAll(json, single.getAggregations());
+			return json;
+		} else if (aggregation instanceof Cardinality) {
+			return value(((Cardinality) aggregation).getValue());
+		} else if (aggregation instanceof ValueCount) {
+			return value(((ValueCount) aggregation).getValue());
+		} else if (aggregation instanceof Stats) {
+			Stats stats = (Stats) aggregation;
+			JSONObject json = new JSONObject();
+			json.put("count", stats.getCount());
+			json.put("min", stats.getCount() == 0 ? null : stats.getMin());
+			json.put("max", stats.getCount() == 0 ? null : stats.getMax());
+			json.put("avg", stats.getCount() == 0 ? null : stats.getAvg());
+			json.put("sum", stats.getSum());
+			return json;
+		} else if (aggregation instanceof NumericMetricsAggregation.SingleValue) {
+			double value = ((NumericMetricsAggregation.SingleValue) aggregation).value();
+			return value(Double.isNaN(value) || Double.isInfinite(value) ? null : value);
+		}
+		return toRawJson(aggregation);
+	}
+
+	private static JSONObject toJson(MultiBucketsAggregation aggregation) {
+		JSONArray buckets = new JSONArray();
+		for (MultiBucketsAggregation.Bucket bucket : aggregation.getBuckets()) {
+			JSONObject json = new JSONObject();
+			Object key = bucket.getKey();
+			if (key instanceof DateTime) {
+				json.put("key", ((DateTime) key).getMillis());
+				json.put("keyAsString", bucket.getKeyAsString());
+			} else if (key instanceof Number) {
+				json.put("key", key);
+			} else {
+				json.put("key", bucket.getKeyAsString());
+			}
+
+			if (bucket instanceof Range.Bucket) {
+				Range.Bucket range = (Range.Bucket) bucket;
+				json.put("from", getBound(range.getFrom(), range.getFromAsString()));
+				json.put("to", getBound(range.getTo(), range.getToAsString()));
+			}
+
+			json.put("count", bucket.getDocCount());
+			putAll(json, bucket.getAggregations());
+			buckets.add(json);
+		}
+
+		JSONObject json = new JSONObject();
+		json.put("buckets", buckets);
+		if (aggregation instanceof Terms) {
+			json.put("other", ((Terms) aggregation).getSumOfOtherDocCounts());
+		}
+		return json;
+	}
+
+	private static void putAll(JSONObject json, Aggregations aggregations) {
+		for (Aggregation aggregation : aggregations) {
+			json.put(aggregation.getName(), toJson(aggregation));
+		}
+	}
+
+	private static JSONObject value(Object value) {
+		JSONObject json = new JSONObject();
+		json.put("value", value);
+		return json;
+	}
+
+	/**
+	 * 无界的一端返回 null
+	 */
+	private static Object getBound(Object bound, String boundAsString) {
+		if (bound instanceof Double && Double.isInfinite((Double) bound)) {
+			return null;
+		} else if (bound instanceof DateTime) {
+			return ((DateTime) bound).getMillis();
+		} else if (bound instanceof Number) {
+			return bound;
+		}
+		return boundAsString;
+	}
+
+	private static Object toRawJson(Aggregation aggregation) {
+		try {
+			XContentBuilder builder = XContentFactory.jsonBuilder().startObject();
+			((ToXContent) aggregation).toXContent(builder, ToXContent.EMPTY_PARAMS);
+			builder.endObject();
+			return JSON.parseObject(builder.string()).get(aggregation.getName());
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,187 @@
+package teclan.es.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 长期打开的追加写文件，替代每次调用都打开、定位、关闭文件的 {@link FileUtils#write2File(String, String)}
+ *
+ * 内容先以 UTF-8 编码进可复用的直接缓冲区，缓冲区满、到达定时刷新间隔或调用 {@link #flush()}、</br>
+ * {@link #force()} 时才写入文件，多个线程可同时写入
+ *
+ * @author dev
+ *
+ */
+public class FileAppender implements Closeable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(FileAppender.class);
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+	private final boolean syncOnFlush;
+	private ScheduledExecutorService scheduler;
+	private boolean closed;
+
+	/**
+	 * @param fileName            文件路径，不存在时创建
+	 * @param bufferSize          缓冲区字节数
+	 * @param flushIntervalMillis 定时刷新间隔（毫秒），小于等于 0 表示只在缓冲区满或显式调用时刷新
+	 * @param syncOnFlush         每次刷新后是否调用 fsync 落盘
+	 * @throws IOException
+	 */
+	public FileAppender(String fileName, int bufferSize, long flushIntervalMillis, boolean syncOnFlush)
+			throws IOException {
+		FileUtils.creatIfNeed(fileName);
+		this.channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+		this.buffer = ByteBuffer.allocateDirect(bufferSize);
+		this.syncOnFlush = syncOnFlush;
+
+		if (flushIntervalMillis > 0) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "file-appender-flush");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			scheduler.scheduleWithFixedDelay(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						flush();
+					} catch (IOException e) {
+						LOGGER.error(e.getMessage(), e);
+					}
+				}
+			}, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * 追加字符串，以 UTF-8 编码
+	 *
+	 * @param content
+	 * @throws IOException
+	 */
+	public synchronized void append(CharSequence content) throws IOException {
+		ensureOpen();
+		CharBuffer chars = CharBuffer.wrap(content);
+		encoder.reset();
+		while (true) {
+			CoderResult result = encoder.encode(chars, buffer, true);
+			if (result.isOverflow()) {
+				writeBuffer();
+				continue;
+			}
+			if (result.isError()) {
+				result.throwException();
+			}
+			break;
+		}
+		while (encoder.flush(buffer).isOverflow()) {
+			writeBuffer();
+		}
+	}
+
+	/**
+	 * 追加字节，超过缓冲区大小的内容直接写入文件
+	 *
+	 * @param content
+	 * @throws IOException
+	 */
+	public synchronized void append(byte[] content) throws IOException {
+		ensureOpen();
+		if (content.length > buffer.remaining()) {
+			writeBuffer();
+		}
+		if (content.length > buffer.capacity()) {
+			ByteBuffer wrapped = ByteBuffer.wrap(content);
+			while (wrapped.hasRemaining()) {
+				channel.write(wrapped);
+			}
+		} else {
+			buffer.put(content);
+		}
+	}
+
+	/**
+	 * 将缓冲区写入文件，syncOnFlush 为 true 时同时落盘
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void flush() throws IOException {
+		if (closed) {
+			return;
+		}
+		boolean written = buffer.position() > 0;
+		writeBuffer();
+		if (syncOnFlush && written) {
+			channel.force(false);
+		}
+	}
+
+	/**
+	 * 将缓冲区写入文件并落盘
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void force() throws IOException {
+		ensureOpen();
+		writeBuffer();
+		channel.force(false);
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (scheduler != null) {
+			scheduler.shutdown();
+		}
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			try {
+				writeBuffer();
+				if (syncOnFlush) {
+					channel.force(false);
+				}
+			} finally {
+				closed = true;
+				channel.close();
+			}
+		}
+	}
+
+	private void writeBuffer() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	private void ensureOpen() throws IOException {
+		if (closed) {
+			throw new IOException("文件已关闭");
+		}
+	}
+}
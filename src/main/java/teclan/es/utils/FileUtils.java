@@ -7,6 +7,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,17 +17,23 @@ public class FileUtils {
             .getLogger(FileUtils.class);
 
 
+    /**
+     * 以 UTF-8 读取整个文件的内容，大文件请使用 {@link #openJsonArray(File)} 流式读取
+     * 
+     * @param file
+     * @return
+     */
     public static String getContent(File file) {
         StringBuilder content = new StringBuilder();
         try {
 
             if (file.isFile() && file.exists()) { // 判断文件是否存在
                 InputStreamReader read = new InputStreamReader(
-						new FileInputStream(file));
+						new FileInputStream(file), StandardCharsets.UTF_8);
                 BufferedReader bufferedReader = new BufferedReader(read);
                 String line = null;
                 while ((line = bufferedReader.readLine()) != null) {
-                    content.append(line);
+                    content.append(line).append('\n');
                 }
                 read.close();
             } else {
@@ -39,6 +46,16 @@ public class FileUtils {
         return content.toString();
     }
 
+    /**
+     * 打开一个内容为 JSON 数组的文件，逐个读取其中的对象，内存占用与文件大小无关
+     * 
+     * @param file
+     * @return 使用完毕后需关闭
+     * @throws IOException
+     */
+    public static JsonArrayReader openJsonArray(File file) throws IOException {
+        return new JsonArrayReader(file);
+    }
 
     /**
      * @author Teclan 向文件追加内容，如果文件不存在，创建文件
@@ -125,6 +142,19 @@ public class FileUtils {
     }
 
 
+    /**
+     * 打开一个长期使用的追加写文件，缓冲 64KB，每秒定时刷新，不主动落盘；</br>
+     * 频繁追加时用于替代 {@link #write2File(String, String)} 和 {@link #randomWrite2File(String, byte[])}
+     * 
+     * @param fileName
+     *            文件路径
+     * @return 使用完毕后需关闭
+     * @throws IOException
+     */
+    public static FileAppender openAppender(String fileName) throws IOException {
+        return new FileAppender(fileName, 64 * 1024, 1000, false);
+    }
+
     public static void creatIfNeed(String fileName) {
         try {
             File parentFile = new File(fileName).getParentFile();
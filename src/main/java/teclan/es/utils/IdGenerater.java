@@ -1,32 +1,251 @@
 package teclan.es.utils;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import com.relops.snowflake.Snowflake;
 
 /**
  * Twitter的雪花算法SnowFlake，用来生成64位的ID
- * 
+ *
+ * 与 {@link Snowflake} 的格式一致：毫秒时间戳左移 22 位，节点号占 10 位，序号占 12 位；</br>
+ * 时间戳和序号打包在一个 AtomicLong 中，通过 CAS 分配，不需要加锁。</br>
+ * 同一毫秒内序号用尽时等待下一毫秒，系统时钟回拨时沿用上次的时间戳继续分配，保证 ID 不重复且递增
+ *
  * @author dev
  *
  */
 public class IdGenerater {
 
-	private static int NODE = 1;
-	private static Snowflake SNOWFLAKE;
+	private static final int SEQUENCE_BITS = 12;
+	private static final int NODE_BITS = 10;
+	private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+	private static final int MAX_NODE = (1 << NODE_BITS) - 1;
+	private static final int BASE62_LENGTH = 11;
+	private static final char[] BASE62 = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz"
+			.toCharArray();
 
+	private static volatile int NODE = 1;
+
+	/**
+	 * 上次分配的时间戳和序号，(时间戳 << 12) | 序号
+	 */
+	private static final AtomicLong STATE = new AtomicLong();
+
+	/**
+	 * 设置节点号，多个实例同时生成 ID 时每个实例的节点号必须不同
+	 *
+	 * @param node 0 ~ 1023
+	 */
 	public static void init(int node) {
-		NODE=node;
-		SNOWFLAKE = new Snowflake(NODE);
+		if (node < 0 || node > MAX_NODE) {
+			throw new IllegalArgumentException(String.format("node must be between %s and %s", 0, MAX_NODE));
+		}
+		NODE = node;
 	}
 
-	public static synchronized String getNextId() {
-		return String.valueOf(SNOWFLAKE.next());
+	public static String getNextId() {
+		return String.valueOf(nextId());
 	}
 
-	public Snowflake getSnowflake() {
-		if (SNOWFLAKE == null) {
-			SNOWFLAKE = new Snowflake(NODE);
+	/**
+	 * 生成 ID，不创建字符串
+	 *
+	 * @return
+	 */
+	public static long nextId() {
+		while (true) {
+			long current = STATE.get();
+			long next = nextState(current);
+			if (next >= 0 && STATE.compareAndSet(current, next)) {
+				return toId(next);
+			}
+		}
+	}
+
+	/**
+	 * 批量生成 ID 写入调用方提供的数组
+	 *
+	 * @param ids
+	 * @param offset 写入的起始位置
+	 * @param n      生成的个数
+	 */
+	public static void nextIds(long[] ids, int offset, int n) {
+		int filled = 0;
+		while (filled < n) {
+			filled += reserve(ids, offset + filled, n - filled);
+		}
+	}
+
+	/**
+	 * 批量生成 ID，同一毫秒内可用的序号一次 CAS 全部取走
+	 *
+	 * @param n
+	 * @return
+	 */
+	public static String[] nextIds(int n) {
+		long[] ids = new long[n];
+		nextIds(ids, 0, n);
+
+		String[] result = new String[n];
+		for (int i = 0; i < n; i++) {
+			result[i] = String.valueOf(ids[i]);
 		}
-		return SNOWFLAKE;
+		return result;
+	}
+
+	/**
+	 * 分配最多 n 个连续的 ID 写入 ids，一次 CAS 只在一个毫秒内分配
+	 *
+	 * @param ids
+	 * @param offset
+	 * @param n
+	 * @return 实际分配的个数，序号用尽等待后返回 0
+	 */
+	private static int reserve(long[] ids, int offset, int n) {
+		while (true) {
+			long current = STATE.get();
+			long first = nextState(current);
+			if (first < 0) {
+				return 0;
+			}
+
+			int count = (int) Math.min(n, SEQUENCE_MASK - (first & SEQUENCE_MASK) + 1);
+			if (STATE.compareAndSet(current, first + count - 1)) {
+				long id = toId(first);
+				for (int i = 0; i < count; i++) {
+					ids[offset + i] = id + i;
+				}
+				return count;
+			}
+		}
+	}
+
+	/**
+	 * 计算 current 之后的第一个可用状态
+	 *
+	 * @param current
+	 * @return 序号用尽并已等待到下一毫秒时返回 -1
+	 */
+	private static long nextState(long current) {
+		long next = nextState(current, System.currentTimeMillis());
+		if (next < 0) {
+			// 序号用尽，等待下一毫秒
+			long lastTime = current >>> SEQUENCE_BITS;
+			while (System.currentTimeMillis() <= lastTime) {
+				Thread.yield();
+			}
+		}
+		return next;
+	}
+
+	/**
+	 * 按给定的当前时间计算 current 之后的第一个可用状态
+	 *
+	 * @param current
+	 * @param now     当前时间（毫秒）
+	 * @return 同一毫秒内序号用尽时返回 -1
+	 */
+	static long nextState(long current, long now) {
+		long lastTime = current >>> SEQUENCE_BITS;
+
+		if (now > lastTime) {
+			return now << SEQUENCE_BITS;
+		} else if ((current & SEQUENCE_MASK) < SEQUENCE_MASK) {
+			// 同一毫秒或时钟回拨，沿用上次的时间戳
+			return current + 1;
+		} else if (now == lastTime) {
+			return -1;
+		} else {
+			// 时钟回拨且序号用尽，借用下一毫秒
+			return (lastTime + 1) << SEQUENCE_BITS;
+		}
+	}
+
+	private static long toId(long state) {
+		return ((state >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS)) | ((long) NODE << SEQUENCE_BITS)
+				| (state & SEQUENCE_MASK);
+	}
+
+	/**
+	 * 将 ID 以十进制写入字符数组
+	 *
+	 * @param id     非负数
+	 * @param buffer 至少 19 个字符
+	 * @param offset
+	 * @return 写入的字符数
+	 */
+	public static int writeDecimal(long id, char[] buffer, int offset) {
+		int length = 1;
+		for (long value = id / 10; value > 0; value /= 10) {
+			length++;
+		}
+		for (int i = offset + length - 1; i >= offset; i--) {
+			buffer[i] = (char) ('0' + id % 10);
+			id /= 10;
+		}
+		return length;
+	}
+
+	/**
+	 * 将 ID 以定长 11 位的 62 进制写入字符数组，字符按 ASCII 顺序排列，字典序与数值大小一致
+	 *
+	 * @param id     非负数
+	 * @param buffer 至少 11 个字符
+	 * @param offset
+	 * @return 写入的字符数，固定为 11
+	 */
+	public static int writeBase62(long id, char[] buffer, int offset) {
+		for (int i = offset + BASE62_LENGTH - 1; i >= offset; i--) {
+			buffer[i] = BASE62[(int) (id % 62)];
+			id /= 62;
+		}
+		return BASE62_LENGTH;
+	}
+
+	/**
+	 * 定长 11 位的 62 进制 ID，比十进制短 8 个字符，作为 _id 时词典更紧凑
+	 *
+	 * @param id
+	 * @return
+	 */
+	public static String toBase62(long id) {
+		char[] buffer = new char[BASE62_LENGTH];
+		writeBase62(id, buffer, 0);
+		return new String(buffer);
+	}
+
+	/**
+	 * 解析 {@link #toBase62(long)} 生成的 ID
+	 *
+	 * @param id
+	 * @return
+	 */
+	public static long fromBase62(String id) {
+		long value = 0;
+		for (int i = 0; i < id.length(); i++) {
+			char c = id.charAt(i);
+			int digit = c <= '9' ? c - '0' : (c <= 'Z' ? c - 'A' + 10 : c - 'a' + 36);
+			value = value * 62 + digit;
+		}
+		return value;
+	}
+
+	/**
+	 * 保留给旧代码使用，返回的对象的 {@link Snowflake#next()} 委托给 {@link #nextId()}，</br>
+	 * 与本类共用同一个分配状态，不会生成重复的 ID
+	 *
+	 * @return
+	 * @deprecated 使用 {@link #nextId()}
+	 */
+	@Deprecated
+	public Snowflake getSnowflake() {
+		return new Snowflake(NODE) {
+
+			@Override
+			public long next() {
+				return nextId();
+			}
+		};
 	}
 
 }
@@ -0,0 +1,200 @@
+package teclan.es.utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONException;
+import com.alibaba.fastjson.JSONObject;
+
+/**
+ * 逐个读取 JSON 数组文件中的对象
+ *
+ * 通过 FileChannel 按块读取，以 UTF-8 解码后增量切分数组元素，</br>
+ * 内存中只保留当前读取块和当前元素，与文件大小无关
+ *
+ * @author dev
+ *
+ */
+public class JsonArrayReader implements Iterator<JSONObject>, Closeable {
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final FileChannel channel;
+	private final ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+	private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPORT).onUnmappableCharacter(CodingErrorAction.REPORT);
+	private final StringBuilder element = new StringBuilder();
+
+	private boolean eof;
+	private boolean started;
+	private boolean finished;
+	private int depth;
+	private boolean inString;
+	private boolean escaped;
+	private String next;
+
+	public JsonArrayReader(File file) throws IOException {
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		this.chars.flip();
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (next == null && !finished) {
+			try {
+				next = readElement();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return next != null;
+	}
+
+	@Override
+	public JSONObject next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		String text = next;
+		next = null;
+		return JSON.parseObject(text);
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * 读取下一个数组元素的原始文本，数组结束时返回 null
+	 *
+	 * @return
+	 * @throws IOException
+	 */
+	private String readElement() throws IOException {
+		while (true) {
+			if (!chars.hasRemaining() && !fill()) {
+				throw new JSONException("JSON 数组不完整，缺少结尾的 ]");
+			}
+			char c = chars.get();
+
+			if (!started) {
+				if (c == '[') {
+					started = true;
+					depth = 1;
+				} else if (!Character.isWhitespace(c) && c != '\uFEFF') {
+					throw new JSONException("文件内容不是 JSON 数组，起始字符：" + c);
+				}
+				continue;
+			}
+
+			if (inString) {
+				element.append(c);
+				if (escaped) {
+					escaped = false;
+				} else if (c == '\\') {
+					escaped = true;
+				} else if (c == '"') {
+					inString = false;
+				}
+				continue;
+			}
+
+			switch (c) {
+			case '"':
+				inString = true;
+				element.append(c);
+				break;
+			case '{':
+			case '[':
+				depth++;
+				element.append(c);
+				break;
+			case '}':
+			case ']':
+				depth--;
+				if (depth == 0) {
+					finished = true;
+					return take();
+				}
+				element.append(c);
+				break;
+			case ',':
+				if (depth == 1) {
+					String text = take();
+					if (text != null) {
+						return text;
+					}
+				} else {
+					element.append(c);
+				}
+				break;
+			default:
+				if (!Character.isWhitespace(c)) {
+					element.append(c);
+				}
+			}
+		}
+	}
+
+	private String take() {
+		if (element.length() == 0) {
+			return null;
+		}
+		String text = element.toString();
+		element.setLength(0);
+		return text;
+	}
+
+	/**
+	 * 从文件读取下一块并解码
+	 *
+	 * @return 是否读到了字符
+	 * @throws IOException
+	 */
+	private boolean fill() throws IOException {
+		if (eof) {
+			return false;
+		}
+		chars.clear();
+		while (true) {
+			int read = channel.read(bytes);
+			bytes.flip();
+			CoderResult result = decoder.decode(bytes, chars, read < 0);
+			bytes.compact();
+			if (result.isError()) {
+				result.throwException();
+			}
+			if (read < 0) {
+				if (!result.isOverflow()) {
+					decoder.flush(chars);
+					eof = true;
+				}
+				break;
+			}
+			if (chars.position() > 0) {
+				break;
+			}
+		}
+		chars.flip();
+		return chars.hasRemaining();
+	}
+}
@@ -0,0 +1,149 @@
+package teclan.es.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alibaba.fastjson.JSONObject;
+
+/**
+ * 进程内 LRU 缓存，按条目数和字节数限制容量，超过存活时间的条目不会被返回；</br>
+ * 值的字节数按 toString() 长度的两倍估算，缓存的对象会被多个调用方共享，不应修改
+ *
+ * 读穿透时先取 {@link #stamp()}，查询完成后带上该值调用 {@link #put(String, String, long)}，</br>
+ * 期间若发生过失效操作则放弃写入，避免把失效前读到的旧数据放回缓存
+ *
+ * @author dev
+ *
+ */
+public class LocalCache<V> {
+
+	private final int maxEntries;
+	private final long maxBytes;
+	private final long ttlMillis;
+
+	private final LinkedHashMap<String, Entry<V>> entries = new LinkedHashMap<String, Entry<V>>(16, 0.75f, true);
+	private long bytes = 0;
+	private long invalidations = 0;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong expirations = new AtomicLong();
+
+	/**
+	 * @param maxEntries 最大条目数
+	 * @param maxBytes   最大字节数，按 toString() 长度的两倍估算
+	 * @param ttlMillis  条目存活时间（毫秒）
+	 */
+	public LocalCache(int maxEntries, long maxBytes, long ttlMillis) {
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+		this.ttlMillis = ttlMillis;
+	}
+
+	public V get(String key) {
+		synchronized (this) {
+			Entry<V> entry = entries.get(key);
+			if (entry != null) {
+				if (System.currentTimeMillis() - entry.created < ttlMillis) {
+					hits.incrementAndGet();
+					return entry.value;
+				}
+				remove(key);
+				expirations.incrementAndGet();
+			}
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * 当前的失效计数，读穿透前获取
+	 *
+	 * @return
+	 */
+	public synchronized long stamp() {
+		return invalidations;
+	}
+
+	/**
+	 * 写入缓存，stamp 之后发生过失效操作时不写入
+	 *
+	 * @param key
+	 * @param value
+	 * @param stamp {@link #stamp()} 的返回值
+	 */
+	public synchronized void put(String key, V value, long stamp) {
+		if (stamp != invalidations) {
+			return;
+		}
+		long size = weigh(value);
+		if (size > maxBytes) {
+			return;
+		}
+		remove(key);
+		entries.put(key, new Entry<V>(value, size, System.currentTimeMillis()));
+		bytes += size;
+
+		Iterator<Map.Entry<String, Entry<V>>> iterator = entries.entrySet().iterator();
+		while ((entries.size() > maxEntries || bytes > maxBytes) && iterator.hasNext()) {
+			bytes -= iterator.next().getValue().size;
+			iterator.remove();
+			evictions.incrementAndGet();
+		}
+	}
+
+	public synchronized void invalidate(String key) {
+		invalidations++;
+		remove(key);
+	}
+
+	public synchronized void invalidateAll() {
+		invalidations++;
+		entries.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * 缓存统计信息
+	 *
+	 * @return hits、misses、evictions、expirations、size、bytes
+	 */
+	public JSONObject getStats() {
+		JSONObject stats = new JSONObject();
+		stats.put("hits", hits.get());
+		stats.put("misses", misses.get());
+		stats.put("evictions", evictions.get());
+		stats.put("expirations", expirations.get());
+		synchronized (this) {
+			stats.put("size", entries.size());
+			stats.put("bytes", bytes);
+		}
+		return stats;
+	}
+
+	private void remove(String key) {
+		Entry<V> entry = entries.remove(key);
+		if (entry != null) {
+			bytes -= entry.size;
+		}
+	}
+
+	private static long weigh(Object value) {
+		return 2L * value.toString().length();
+	}
+
+	private static class Entry<V> {
+		private final V value;
+		private final long size;
+		private final long created;
+
+		private Entry(V value, long size, long created) {
+			this.value = value;
+			this.size = size;
+			this.created = created;
+		}
+	}
+}
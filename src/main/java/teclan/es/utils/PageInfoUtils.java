@@ -34,6 +34,17 @@ public class PageInfoUtils {
 
 	}
 
+	/**
+	 * 不依赖总页数计算偏移量，页码小于 1 时按第一页处理
+	 * 
+	 * @param currentPage
+	 * @param pageSize
+	 * @return
+	 */
+	public static int getOffset(int currentPage, int pageSize) {
+		return currentPage < 1 ? 0 : (currentPage - 1) * pageSize;
+	}
+
 	public static JSONObject getPageInfo(long total, int totalPages, int currentPage, int pageSize) {
 		JSONObject pageInfo = new JSONObject();
 		pageInfo.put("total", total);
@@ -43,4 +54,23 @@ public class PageInfoUtils {
 
 		return pageInfo;
 	}
+
+	/**
+	 * 与 {@link #getOffset(int, int)} 取到的文档对应的分页信息：页码小于 1 时为第一页，</br>
+	 * 超出末页时保持请求的页码（该页没有文档），不再修正为末页
+	 * 
+	 * @param total
+	 * @param currentPage
+	 * @param pageSize
+	 * @return
+	 */
+	public static JSONObject getPageInfo(long total, int currentPage, int pageSize) {
+		JSONObject pageInfo = new JSONObject();
+		pageInfo.put("total", total);
+		pageInfo.put("totalPages", getTotalPages(total, pageSize));
+		pageInfo.put("currentPage", currentPage < 1 ? 1 : currentPage);
+		pageInfo.put("pageSize", pageSize);
+
+		return pageInfo;
+	}
 }
@@ -0,0 +1,89 @@
+package teclan.es;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+
+import junit.framework.TestCase;
+
+public class AbstractESDaoImplTest extends TestCase {
+
+	public void testTerminateAfterRejectsSortedQueries() {
+		Dao dao = new Dao();
+		try {
+			dao.query("test", "doc", 1, 10, 100, QueryBuilders.boolQuery(), SortBuilders.fieldSort("time"));
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			dao.query("test", "doc", 1, 10, 100, QueryBuilders.boolQuery(), SortBuilders.scoreSort());
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			dao.query("test", "doc", 1, 10, 100, QueryBuilders.boolQuery(),
+					SortBuilders.fieldSort("_doc").order(SortOrder.DESC));
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	public void testTerminateAfterAllowsDocOrder() {
+		Dao dao = new Dao();
+		// 通过校验后才会用到客户端
+		try {
+			dao.query("test", "doc", 1, 10, 100, QueryBuilders.boolQuery(), SortBuilders.fieldSort("_doc"));
+			fail();
+		} catch (NullPointerException e) {
+		}
+		try {
+			dao.query("test", "doc", 1, 10, 100, QueryBuilders.boolQuery());
+			fail();
+		} catch (NullPointerException e) {
+		}
+	}
+
+	public void testSourceNestedValuesBecomeJson() {
+		Map<String, Object> address = new HashMap<String, Object>();
+		address.put("city", "a");
+		List<Object> tags = new ArrayList<Object>();
+		tags.add("x");
+		tags.add(address);
+		Map<String, Object> source = new HashMap<String, Object>();
+		source.put("address", address);
+		source.put("tags", tags);
+
+		JSONObject json = AbstractESDaoImpl.toJSONObject(source);
+		assertTrue(json.get("address") instanceof JSONObject);
+		assertTrue(json.get("tags") instanceof JSONArray);
+		assertEquals("a", json.getJSONObject("address").getString("city"));
+		assertEquals("a", json.getJSONArray("tags").getJSONObject(1).getString("city"));
+	}
+
+	private static class Dao extends AbstractESDaoImpl {
+
+		@Override
+		public TransportClient getTransportClient() {
+			return null;
+		}
+
+		@Override
+		public String getIndex() {
+			return "test";
+		}
+
+		@Override
+		public String getType() {
+			return "doc";
+		}
+	}
+}
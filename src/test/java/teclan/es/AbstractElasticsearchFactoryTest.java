@@ -0,0 +1,50 @@
+package teclan.es;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+
+import junit.framework.TestCase;
+
+public class AbstractElasticsearchFactoryTest extends TestCase {
+
+	private static final String DEFINITION = "{\"settings\":{\"number_of_shards\":1},"
+			+ "\"mappings\":{\"plan\":{\"_meta\":{\"owner\":\"a\"},\"properties\":{\"id\":{\"type\":\"string\"}}},"
+			+ "\"task\":{\"properties\":{\"id\":{\"type\":\"string\"}}}}}";
+
+	public void testVersionMetaRoundTrip() {
+		String version = AbstractElasticsearchFactory.getIndexVersion(DEFINITION);
+		JSONObject definition = JSON.parseObject(AbstractElasticsearchFactory.withVersionMeta(DEFINITION, version));
+		JSONObject mappings = definition.getJSONObject("mappings");
+		assertEquals(version, mappings.getJSONObject("task").getJSONObject("_meta").getString("index_version"));
+		assertEquals("a", mappings.getJSONObject("plan").getJSONObject("_meta").getString("owner"));
+
+		// GET /index/_mapping 的结构
+		JSONObject response = new JSONObject();
+		response.put("plan_index", definition);
+		assertEquals(version, AbstractElasticsearchFactory.getRecordedVersion(response));
+	}
+
+	public void testNoRecordedVersion() {
+		JSONObject response = new JSONObject();
+		response.put("plan_index", JSON.parseObject(DEFINITION));
+		assertNull(AbstractElasticsearchFactory.getRecordedVersion(response));
+		assertEquals("{}", AbstractElasticsearchFactory.withVersionMeta("{}", "0000"));
+	}
+
+	public void testReindexTaskMatchesIndices() {
+		assertTrue(AbstractElasticsearchFactory.isReindexTask(task("reindex from [plan_1a2b3c4d] to [plan_5e6f7a8b]"),
+				"plan_1a2b3c4d", "plan_5e6f7a8b"));
+		assertFalse(AbstractElasticsearchFactory.isReindexTask(task("reindex from [other_1] to [other_2]"),
+				"plan_1a2b3c4d", "plan_5e6f7a8b"));
+		assertFalse(AbstractElasticsearchFactory.isReindexTask(task("reindex from [plan_1a2b3c4d] to [plan_copy]"),
+				"plan_1a2b3c4d", "plan_5e6f7a8b"));
+		assertTrue(AbstractElasticsearchFactory.isReindexTask(new JSONObject(), "plan_1a2b3c4d", "plan_5e6f7a8b"));
+	}
+
+	private static JSONObject task(String description) {
+		JSONObject task = new JSONObject();
+		task.put("action", "indices:data/write/reindex");
+		task.put("description", description);
+		return task;
+	}
+}
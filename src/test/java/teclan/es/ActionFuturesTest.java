@@ -0,0 +1,52 @@
+package teclan.es;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import junit.framework.TestCase;
+
+public class ActionFuturesTest extends TestCase {
+
+	public void testJoinThrowsRuntimeCause() {
+		CompletableFuture<String> future = new CompletableFuture<String>();
+		IllegalStateException failure = new IllegalStateException("failed");
+		future.completeExceptionally(failure);
+		try {
+			ActionFutures.join(future);
+			fail();
+		} catch (IllegalStateException e) {
+			assertSame(failure, e);
+		}
+	}
+
+	public void testJoinWrapsCheckedCause() {
+		CompletableFuture<String> future = new CompletableFuture<String>();
+		future.completeExceptionally(new Exception("checked"));
+		try {
+			ActionFutures.join(future);
+			fail();
+		} catch (CompletionException e) {
+			assertEquals("checked", e.getCause().getMessage());
+		}
+	}
+
+	public void testWithTimeout() throws Exception {
+		CompletableFuture<String> future = ActionFutures.withTimeout(new CompletableFuture<String>(), 10);
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof TimeoutException);
+		}
+	}
+
+	public void testCompletedBeforeTimeout() throws Exception {
+		CompletableFuture<String> future = ActionFutures.withTimeout(new CompletableFuture<String>(), 60 * 1000);
+		future.complete("done");
+		assertEquals("done", future.get());
+		assertSame(future, ActionFutures.withTimeout(future, 10));
+	}
+}
@@ -0,0 +1,117 @@
+package teclan.es;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class BulkLoadSessionTest extends TestCase {
+
+	public void testNestedSessionsRestoreOriginalSettings() throws Exception {
+		FakeOperations operations = new FakeOperations("nested", "5s", "2");
+
+		BulkLoadSession outer = new BulkLoadSession(operations, "nested", 1, 1000);
+		outer.open();
+		assertEquals("-1", operations.settings.get("index.refresh_interval"));
+		assertEquals("0", operations.settings.get("index.number_of_replicas"));
+
+		BulkLoadSession inner = new BulkLoadSession(operations, "nested", 1, 1000);
+		inner.open();
+		inner.close();
+		// 外层会话仍在导入
+		assertEquals("-1", operations.settings.get("index.refresh_interval"));
+		assertTrue(operations.calls.isEmpty());
+
+		outer.close();
+		assertEquals("5s", operations.settings.get("index.refresh_interval"));
+		assertEquals("2", operations.settings.get("index.number_of_replicas"));
+		assertEquals("[refresh, forceMerge, waitForGreen]", operations.calls.toString());
+	}
+
+	public void testConcurrentSessionsOnSameIndex() throws Exception {
+		FakeOperations operations = new FakeOperations("concurrent", "1s", "1");
+		BulkLoadSession first = new BulkLoadSession(operations, "concurrent", 0, 1000);
+		BulkLoadSession second = new BulkLoadSession(operations, "concurrent", 0, 1000);
+		first.open();
+		second.open();
+		first.close();
+		assertEquals("-1", operations.settings.get("index.refresh_interval"));
+		second.close();
+		assertEquals("1s", operations.settings.get("index.refresh_interval"));
+		assertEquals("1", operations.settings.get("index.number_of_replicas"));
+		assertEquals("[refresh, waitForGreen]", operations.calls.toString());
+
+		// 全部关闭后重新打开时再次记录原设置
+		operations.settings.put("index.refresh_interval", "30s");
+		BulkLoadSession third = new BulkLoadSession(operations, "concurrent", 0, 1000);
+		third.open();
+		third.close();
+		assertEquals("30s", operations.settings.get("index.refresh_interval"));
+	}
+
+	public void testFailedOpenLeavesSettingsUnchanged() throws Exception {
+		FakeOperations operations = new FakeOperations("failed", "1s", "1");
+		operations.failUpdate = true;
+		BulkLoadSession session = new BulkLoadSession(operations, "failed", 0, 1000);
+		try {
+			session.open();
+			fail();
+		} catch (IOException e) {
+		}
+		session.close();
+		assertEquals("1s", operations.settings.get("index.refresh_interval"));
+		assertTrue(operations.calls.isEmpty());
+
+		operations.failUpdate = false;
+		session = new BulkLoadSession(operations, "failed", 0, 1000);
+		session.open();
+		session.close();
+		assertEquals("1s", operations.settings.get("index.refresh_interval"));
+	}
+
+	private static class FakeOperations implements BulkLoadSession.Operations {
+		private final String index;
+		private final Map<String, String> settings = new HashMap<String, String>();
+		private final List<String> calls = new ArrayList<String>();
+		private boolean failUpdate;
+
+		FakeOperations(String index, String refreshInterval, String replicas) {
+			this.index = index;
+			settings.put("index.refresh_interval", refreshInterval);
+			settings.put("index.number_of_replicas", replicas);
+		}
+
+		@Override
+		public Map<String, Map<String, String>> getSettings(String index) {
+			Map<String, Map<String, String>> result = new HashMap<String, Map<String, String>>();
+			result.put(this.index, new HashMap<String, String>(settings));
+			return result;
+		}
+
+		@Override
+		public void updateSettings(String index, Map<String, String> settings) throws IOException {
+			if (failUpdate) {
+				throw new IOException("rejected");
+			}
+			this.settings.putAll(settings);
+		}
+
+		@Override
+		public void refresh(String index) {
+			calls.add("refresh");
+		}
+
+		@Override
+		public void forceMerge(String index, int maxNumSegments, long timeoutMillis) {
+			calls.add("forceMerge");
+		}
+
+		@Override
+		public void waitForGreen(String index, long timeoutMillis) {
+			calls.add("waitForGreen");
+		}
+	}
+}
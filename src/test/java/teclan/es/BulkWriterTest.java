@@ -0,0 +1,163 @@
+package teclan.es;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.action.Action;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionRequestBuilder;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.bulk.BackoffPolicy;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.client.support.AbstractClient;
+import org.elasticsearch.client.support.Headers;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import junit.framework.TestCase;
+import teclan.es.metrics.MetricsListener;
+
+public class BulkWriterTest extends TestCase {
+	private ThreadPool threadPool;
+
+	@Override
+	protected void setUp() throws Exception {
+		threadPool = new ThreadPool("bulk-writer-test");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		ThreadPool.terminate(threadPool, 10, TimeUnit.SECONDS);
+	}
+
+	public void testRejectedItemKeepsItsOwnResult() throws Exception {
+		RejectingClient client = new RejectingClient(threadPool, "a", 1, false);
+		BulkWriter writer = newWriter(client, 3);
+
+		CompletableFuture<BulkItemResponse> a = writer.add(newRequest("a"));
+		CompletableFuture<BulkItemResponse> b = writer.add(newRequest("b"));
+		CompletableFuture<BulkItemResponse> c = writer.add(newRequest("c"));
+		assertTrue(writer.awaitClose(10, TimeUnit.SECONDS));
+
+		assertSucceeded("a", a.get());
+		assertSucceeded("b", b.get());
+		assertSucceeded("c", c.get());
+		assertEquals(2, client.batches.size());
+		assertEquals(1, client.batches.get(1).size());
+		assertEquals("a", client.batches.get(1).get(0));
+		assertEquals(0, writer.getPending());
+	}
+
+	public void testRetriesExhausted() throws Exception {
+		RejectingClient client = new RejectingClient(threadPool, "a", Integer.MAX_VALUE, false);
+		BulkWriter writer = newWriter(client, 2);
+
+		CompletableFuture<BulkItemResponse> a = writer.add(newRequest("a"));
+		CompletableFuture<BulkItemResponse> b = writer.add(newRequest("b"));
+		assertTrue(writer.awaitClose(10, TimeUnit.SECONDS));
+
+		assertTrue(a.get().isFailed());
+		assertEquals("a", a.get().getId());
+		assertEquals(RestStatus.TOO_MANY_REQUESTS, a.get().getFailure().getStatus());
+		assertSucceeded("b", b.get());
+		// 首次提交加上 3 次重试
+		assertEquals(4, client.batches.size());
+	}
+
+	public void testRejectedBatchIsRetried() throws Exception {
+		RejectingClient client = new RejectingClient(threadPool, null, 1, true);
+		BulkWriter writer = newWriter(client, 2);
+
+		CompletableFuture<BulkItemResponse> a = writer.add(newRequest("a"));
+		CompletableFuture<BulkItemResponse> b = writer.add(newRequest("b"));
+		assertTrue(writer.awaitClose(10, TimeUnit.SECONDS));
+
+		assertSucceeded("a", a.get());
+		assertSucceeded("b", b.get());
+		Set<String> retried = new HashSet<String>(client.batches.get(1));
+		if (client.batches.size() > 2) {
+			retried.addAll(client.batches.get(2));
+		}
+		assertEquals(2, retried.size());
+	}
+
+	private static BulkWriter newWriter(RejectingClient client, int bulkActions) {
+		return new BulkWriter(client, "test", bulkActions, 5 * 1024 * 1024, 0, 0, 100,
+				BackoffPolicy.constantBackoff(TimeValue.timeValueMillis(1), 3), MetricsListener.NONE, "test");
+	}
+
+	private static IndexRequest newRequest(String id) {
+		return new IndexRequest("test", "doc", id).source("{\"id\":\"" + id + "\"}");
+	}
+
+	private static void assertSucceeded(String id, BulkItemResponse item) {
+		assertFalse(item.isFailed());
+		assertEquals(id, item.getId());
+	}
+
+	/**
+	 * 前 times 次提交时拒绝指定的文档，或拒绝整个批次
+	 */
+	private static class RejectingClient extends AbstractClient {
+		private final String rejectedId;
+		private final boolean rejectBatch;
+		private int times;
+		private final List<List<String>> batches = new ArrayList<List<String>>();
+
+		RejectingClient(ThreadPool threadPool, String rejectedId, int times, boolean rejectBatch) {
+			super(Settings.EMPTY, threadPool, Headers.EMPTY);
+			this.rejectedId = rejectedId;
+			this.times = times;
+			this.rejectBatch = rejectBatch;
+		}
+
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		@Override
+		protected synchronized <Request extends ActionRequest, Response extends ActionResponse, RequestBuilder extends ActionRequestBuilder<Request, Response, RequestBuilder>> void doExecute(
+				Action<Request, Response, RequestBuilder> action, Request request, ActionListener<Response> listener) {
+			List<ActionRequest> requests = ((BulkRequest) request).requests();
+			List<String> ids = new ArrayList<String>();
+			for (ActionRequest item : requests) {
+				ids.add(((IndexRequest) item).id());
+			}
+			batches.add(ids);
+
+			boolean reject = times > 0;
+			if (reject) {
+				times--;
+			}
+			if (reject && rejectBatch) {
+				listener.onFailure(new EsRejectedExecutionException("rejected"));
+				return;
+			}
+
+			BulkItemResponse[] items = new BulkItemResponse[ids.size()];
+			for (int i = 0; i < ids.size(); i++) {
+				String id = ids.get(i);
+				if (reject && id.equals(rejectedId)) {
+					items[i] = new BulkItemResponse(i, "index", new BulkItemResponse.Failure("test", "doc", id,
+							new EsRejectedExecutionException("rejected")));
+				} else {
+					items[i] = new BulkItemResponse(i, "index", new IndexResponse("test", "doc", id, 1, true));
+				}
+			}
+			listener.onResponse((Response) new BulkResponse(items, 1));
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
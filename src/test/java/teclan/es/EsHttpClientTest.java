@@ -0,0 +1,158 @@
+package teclan.es;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class EsHttpClientTest extends TestCase {
+
+	public void testConnectFailureFailsOverForPost() throws Exception {
+		Server server = new Server(200, "{}");
+		EsHttpClient client = client(closedPort(), server.getPort());
+		try {
+			EsHttpClient.Result result = client.execute("POST", "/test/_bulk", "{}");
+			assertEquals(200, result.getCode());
+			assertEquals(1, server.requests.get());
+		} finally {
+			client.close();
+			server.close();
+		}
+	}
+
+	public void testUnavailableFailsOver() throws Exception {
+		Server busy = new Server(503, "{}");
+		Server ok = new Server(200, "{\"ok\":true}");
+		EsHttpClient client = client(busy.getPort(), ok.getPort());
+		try {
+			EsHttpClient.Result result = client.execute("POST", "/test/_bulk", "{}");
+			assertEquals(200, result.getCode());
+			assertEquals(1, busy.requests.get());
+		} finally {
+			client.close();
+		}
+		// 新的客户端同样从第一个节点开始
+		client = client(busy.getPort(), ok.getPort());
+		try {
+			EsHttpClient.Result result = client.executeAsync("POST", "/test/_bulk", "{}").get();
+			assertEquals(200, result.getCode());
+			assertEquals(2, busy.requests.get());
+		} finally {
+			client.close();
+			busy.close();
+			ok.close();
+		}
+	}
+
+	public void testReadTimeoutNotRetriedForPost() throws Exception {
+		Server slow = new Server(-1, null);
+		Server ok = new Server(200, "{}");
+		EsHttpClient client = client(slow.getPort(), ok.getPort());
+		try {
+			client.execute("POST", "/test/_bulk", "{}", 200);
+			fail();
+		} catch (SocketTimeoutException e) {
+			assertEquals(0, ok.requests.get());
+		} finally {
+			client.close();
+			slow.close();
+			ok.close();
+		}
+	}
+
+	public void testRetryable() {
+		assertTrue(EsHttpClient.isRetryable("GET", new SocketTimeoutException("timeout")));
+		assertTrue(EsHttpClient.isRetryable("POST", new ConnectException()));
+		assertTrue(EsHttpClient.isRetryable("POST", new SocketTimeoutException("connect timed out")));
+		assertFalse(EsHttpClient.isRetryable("POST", new SocketTimeoutException("timeout")));
+		assertFalse(EsHttpClient.isRetryable("POST", new IOException("unexpected end of stream")));
+	}
+
+	private static EsHttpClient client(int first, int second) {
+		return new EsHttpClient(new String[] { "127.0.0.1", "127.0.0.1" }, new int[] { first, second }, 4, 0);
+	}
+
+	private static int closedPort() throws IOException {
+		ServerSocket socket = new ServerSocket(0);
+		int port = socket.getLocalPort();
+		socket.close();
+		return port;
+	}
+
+	/**
+	 * 对每个请求返回固定响应的 HTTP 服务，code 小于 0 时读取请求后不响应
+	 */
+	private static class Server implements Runnable {
+		private final ServerSocket socket;
+		private final int code;
+		private final String body;
+		private final AtomicInteger requests = new AtomicInteger();
+
+		Server(int code, String body) throws IOException {
+			this.socket = new ServerSocket(0);
+			this.code = code;
+			this.body = body;
+			Thread thread = new Thread(this, "test-http-server");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		int getPort() {
+			return socket.getLocalPort();
+		}
+
+		@Override
+		public void run() {
+			while (!socket.isClosed()) {
+				try {
+					Socket connection = socket.accept();
+					readRequest(connection.getInputStream());
+					requests.incrementAndGet();
+					if (code < 0) {
+						continue;
+					}
+					byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+					OutputStream out = connection.getOutputStream();
+					out.write(String.format("HTTP/1.1 %s X\r\nContent-Length: %s\r\nConnection: close\r\n\r\n", code,
+							bytes.length).getBytes(StandardCharsets.UTF_8));
+					out.write(bytes);
+					out.flush();
+					connection.close();
+				} catch (IOException e) {
+					return;
+				}
+			}
+		}
+
+		private static void readRequest(InputStream in) throws IOException {
+			StringBuilder headers = new StringBuilder();
+			int contentLength = 0;
+			int c;
+			while ((c = in.read()) != -1) {
+				headers.append((char) c);
+				if (headers.length() >= 4 && headers.substring(headers.length() - 4).equals("\r\n\r\n")) {
+					break;
+				}
+			}
+			for (String line : headers.toString().split("\r\n")) {
+				if (line.toLowerCase().startsWith("content-length:")) {
+					contentLength = Integer.parseInt(line.substring(15).trim());
+				}
+			}
+			for (int i = 0; i < contentLength; i++) {
+				in.read();
+			}
+		}
+
+		void close() throws IOException {
+			socket.close();
+		}
+	}
+}
@@ -0,0 +1,283 @@
+package teclan.es;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.elasticsearch.action.Action;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionRequestBuilder;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetRequestBuilder;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.client.support.AbstractClient;
+import org.elasticsearch.client.support.Headers;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.index.get.GetResult;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import junit.framework.TestCase;
+import teclan.es.metrics.MetricsListener;
+
+public class GetBatcherTest extends TestCase {
+	private ThreadPool threadPool;
+
+	@Override
+	protected void setUp() throws Exception {
+		threadPool = new ThreadPool("get-batcher-test");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		ThreadPool.terminate(threadPool, 10, TimeUnit.SECONDS);
+	}
+
+	public void testFullBatchIsSubmittedWithoutWaitingForWindow() throws Exception {
+		MultiGetClient client = new MultiGetClient(threadPool);
+		GetBatcher batcher = new GetBatcher(client, 60 * 1000, 3, MetricsListener.NONE);
+		try {
+			List<CompletableFuture<GetResponse>> futures = new ArrayList<CompletableFuture<GetResponse>>();
+			for (int i = 0; i < 3; i++) {
+				futures.add(batcher.get("test", "doc", String.valueOf(i)));
+			}
+			for (int i = 0; i < 3; i++) {
+				assertEquals(String.valueOf(i), futures.get(i).get(5, TimeUnit.SECONDS).getId());
+			}
+			assertEquals(1, client.batches.size());
+		} finally {
+			batcher.close();
+		}
+	}
+
+	public void testWindowFlushesPartialBatch() throws Exception {
+		MultiGetClient client = new MultiGetClient(threadPool);
+		GetBatcher batcher = new GetBatcher(client, 20, 100, MetricsListener.NONE);
+		try {
+			CompletableFuture<GetResponse> a = batcher.get("test", "doc", "a");
+			CompletableFuture<GetResponse> b = batcher.get("test", "doc", "b");
+			assertEquals("a", a.get(5, TimeUnit.SECONDS).getId());
+			assertEquals("b", b.get(5, TimeUnit.SECONDS).getId());
+			assertEquals(1, client.batches.size());
+			assertEquals(2, client.batches.get(0).size());
+		} finally {
+			batcher.close();
+		}
+	}
+
+	/**
+	 * 窗口到期与攒满同时发生时，每个请求只提交一次且都能完成
+	 */
+	public void testConcurrentWindowAndSizeFlush() throws Exception {
+		MultiGetClient client = new MultiGetClient(threadPool);
+		final GetBatcher batcher = new GetBatcher(client, 1, 7, MetricsListener.NONE);
+		final int threads = 16;
+		final int perThread = 200;
+		final List<CompletableFuture<GetResponse>> futures = Collections
+				.synchronizedList(new ArrayList<CompletableFuture<GetResponse>>());
+		final List<String> ids = Collections.synchronizedList(new ArrayList<String>());
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Thread> workers = new ArrayList<Thread>();
+		for (int t = 0; t < threads; t++) {
+			final int thread = t;
+			Thread worker = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int i = 0; i < perThread; i++) {
+						String id = thread + "-" + i;
+						ids.add(id);
+						futures.add(batcher.get("test", "doc", id));
+						if (i % 50 == 0) {
+							try {
+								Thread.sleep(1);
+							} catch (InterruptedException e) {
+								return;
+							}
+						}
+					}
+				}
+			});
+			worker.start();
+			workers.add(worker);
+		}
+		start.countDown();
+		for (Thread worker : workers) {
+			worker.join();
+		}
+
+		try {
+			for (CompletableFuture<GetResponse> future : futures) {
+				assertTrue(future.get(10, TimeUnit.SECONDS).isExists());
+			}
+		} finally {
+			batcher.close();
+		}
+
+		Set<String> submitted = new HashSet<String>();
+		int total = 0;
+		for (List<String> batch : client.batches) {
+			assertTrue(batch.size() <= 7);
+			submitted.addAll(batch);
+			total += batch.size();
+		}
+		assertEquals(threads * perThread, total);
+		assertEquals(new HashSet<String>(ids), submitted);
+	}
+
+	public void testFailureReachesEveryCaller() throws Exception {
+		MultiGetClient client = new MultiGetClient(threadPool);
+		client.reject = true;
+		GetBatcher batcher = new GetBatcher(client, 60 * 1000, 3, MetricsListener.NONE);
+		try {
+			List<CompletableFuture<GetResponse>> futures = new ArrayList<CompletableFuture<GetResponse>>();
+			for (int i = 0; i < 3; i++) {
+				futures.add(batcher.get("test", "doc", String.valueOf(i)));
+			}
+			Throwable first = null;
+			for (CompletableFuture<GetResponse> future : futures) {
+				try {
+					future.get(5, TimeUnit.SECONDS);
+					fail();
+				} catch (ExecutionException e) {
+					assertTrue(e.getCause() instanceof EsRejectedExecutionException);
+					if (first == null) {
+						first = e.getCause();
+					}
+					assertSame(first, e.getCause());
+				}
+			}
+		} finally {
+			batcher.close();
+		}
+	}
+
+	public void testItemFailureOnlyFailsThatCaller() throws Exception {
+		MultiGetClient client = new MultiGetClient(threadPool);
+		client.failedId = "b";
+		GetBatcher batcher = new GetBatcher(client, 60 * 1000, 2, MetricsListener.NONE);
+		try {
+			CompletableFuture<GetResponse> a = batcher.get("test", "doc", "a");
+			CompletableFuture<GetResponse> b = batcher.get("test", "doc", "b");
+			assertEquals("a", a.get(5, TimeUnit.SECONDS).getId());
+			try {
+				b.get(5, TimeUnit.SECONDS);
+				fail();
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof IllegalStateException);
+			}
+		} finally {
+			batcher.close();
+		}
+	}
+
+	public void testSettingsAreReadOnEachUse() throws Exception {
+		MultiGetClient client = new MultiGetClient(threadPool);
+		final AtomicInteger maxBatchSize = new AtomicInteger(100);
+		final AtomicInteger executions = new AtomicInteger();
+		GetBatcher batcher = new GetBatcher(client, 60 * 1000, 100, MetricsListener.NONE) {
+
+			@Override
+			protected int getMaxBatchSize() {
+				return maxBatchSize.get();
+			}
+
+			@Override
+			protected CompletableFuture<MultiGetResponse> execute(String index, MultiGetRequestBuilder builder) {
+				executions.incrementAndGet();
+				return super.execute(index, builder);
+			}
+		};
+		try {
+			CompletableFuture<GetResponse> a = batcher.get("test", "doc", "a");
+			maxBatchSize.set(2);
+			CompletableFuture<GetResponse> b = batcher.get("test", "doc", "b");
+			assertEquals("a", a.get(5, TimeUnit.SECONDS).getId());
+			assertEquals("b", b.get(5, TimeUnit.SECONDS).getId());
+			assertEquals(1, executions.get());
+		} finally {
+			batcher.close();
+		}
+	}
+
+	public void testCloseSubmitsPendingAndLaterGetsDirectly() throws Exception {
+		MultiGetClient client = new MultiGetClient(threadPool);
+		GetBatcher batcher = new GetBatcher(client, 60 * 1000, 100, MetricsListener.NONE);
+		CompletableFuture<GetResponse> a = batcher.get("test", "doc", "a");
+		batcher.close();
+		assertEquals("a", a.get(5, TimeUnit.SECONDS).getId());
+
+		CompletableFuture<GetResponse> b = batcher.get("test", "doc", "b");
+		assertEquals("b", b.get(5, TimeUnit.SECONDS).getId());
+		assertEquals(2, client.batches.size());
+	}
+
+	/**
+	 * 在通用线程池中返回 multi-get 结果，记录每个批次的 id
+	 */
+	private static class MultiGetClient extends AbstractClient {
+		private final List<List<String>> batches = Collections.synchronizedList(new ArrayList<List<String>>());
+		private volatile boolean reject;
+		private volatile String failedId;
+
+		MultiGetClient(ThreadPool threadPool) {
+			super(Settings.EMPTY, threadPool, Headers.EMPTY);
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		protected <Request extends ActionRequest, Response extends ActionResponse, RequestBuilder extends ActionRequestBuilder<Request, Response, RequestBuilder>> void doExecute(
+				Action<Request, Response, RequestBuilder> action, Request request,
+				final ActionListener<Response> listener) {
+			final List<String> ids = new ArrayList<String>();
+			for (MultiGetRequest.Item item : ((MultiGetRequest) request).getItems()) {
+				ids.add(item.id());
+			}
+			batches.add(ids);
+
+			threadPool().generic().execute(new Runnable() {
+
+				@Override
+				public void run() {
+					if (reject) {
+						listener.onFailure(new EsRejectedExecutionException("rejected"));
+						return;
+					}
+					MultiGetItemResponse[] items = new MultiGetItemResponse[ids.size()];
+					for (int i = 0; i < items.length; i++) {
+						String id = ids.get(i);
+						if (id.equals(failedId)) {
+							items[i] = new MultiGetItemResponse(null,
+									new MultiGetResponse.Failure("test", "doc", id, new IllegalStateException("failed")));
+						} else {
+							items[i] = new MultiGetItemResponse(new GetResponse(new GetResult("test", "doc", id, 1,
+									true, new BytesArray("{\"id\":\"" + id + "\"}"), null)), null);
+						}
+					}
+					listener.onResponse((Response) new MultiGetResponse(items));
+				}
+			});
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package teclan.es;
+
+import org.elasticsearch.index.query.QueryBuilders;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+
+import junit.framework.TestCase;
+
+public class QueryResultCacheTest extends TestCase {
+
+	public void testBumpChangesKey() {
+		String before = key("bump");
+		assertEquals(before, key("bump"));
+		QueryResultCache.bump("bump");
+		assertFalse(before.equals(key("bump")));
+	}
+
+	public void testBumpAfterDelay() throws Exception {
+		String before = key("delayed");
+		QueryResultCache.bumpAfter("delayed", 50);
+		String written = key("delayed");
+		assertEquals(before, written);
+
+		Thread.sleep(300);
+		assertFalse(written.equals(key("delayed")));
+	}
+
+	public void testBumpAfterIsPostponedByLaterWrites() throws Exception {
+		QueryResultCache.bumpAfter("postponed", 100);
+		Thread.sleep(60);
+		QueryResultCache.bumpAfter("postponed", 100);
+		Thread.sleep(60);
+		String first = key("postponed");
+
+		// 第一次安排到期后，再等第二次写入的期限到期
+		Thread.sleep(300);
+		String second = key("postponed");
+		assertFalse(first.equals(second));
+		Thread.sleep(200);
+		assertEquals(second, key("postponed"));
+	}
+
+	public void testStaleResultNotServedAfterBump() {
+		QueryResultCache cache = new QueryResultCache(10, 1024 * 1024, 60000);
+		JSONObject result = new JSONObject();
+		result.put("total", 1);
+		cache.put(key("stale"), result);
+		assertEquals(1, cache.get(key("stale")).getIntValue("total"));
+
+		QueryResultCache.bump("stale");
+		assertNull(cache.get(key("stale")));
+	}
+
+	public void testHitReturnsFrozenResultWithoutCopy() {
+		QueryResultCache cache = new QueryResultCache(10, 1024 * 1024, 60000);
+		JSONObject doc = new JSONObject();
+		doc.put("name", "a");
+		JSONArray list = new JSONArray();
+		list.add(doc);
+		JSONObject result = new JSONObject();
+		result.put("result", list);
+
+		JSONObject stored = cache.put(key("frozen"), result);
+		assertSame(stored, cache.get(key("frozen")));
+		assertEquals("a", stored.getJSONArray("result").getJSONObject(0).getString("name"));
+
+		try {
+			stored.put("code", "500");
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			stored.getJSONArray("result").getJSONObject(0).put("name", "b");
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+		// 放入缓存后修改原对象不影响缓存
+		doc.put("name", "c");
+		assertEquals("a", cache.get(key("frozen")).getJSONArray("result").getJSONObject(0).getString("name"));
+	}
+
+	private static String key(String index) {
+		return QueryResultCache.getKey(index, "doc", 1, 25, 0, null, null, QueryBuilders.matchAllQuery());
+	}
+}
@@ -0,0 +1,91 @@
+package teclan.es;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.action.Action;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionRequestBuilder;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
+import org.elasticsearch.client.support.AbstractClient;
+import org.elasticsearch.client.support.Headers;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import junit.framework.TestCase;
+
+public class RefreshCoalescerTest extends TestCase {
+	private ThreadPool threadPool;
+	private RefreshClient client;
+
+	@Override
+	protected void setUp() throws Exception {
+		threadPool = new ThreadPool("refresh-coalescer-test");
+		client = new RefreshClient(threadPool);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		RefreshCoalescer.close(client);
+		ThreadPool.terminate(threadPool, 10, TimeUnit.SECONDS);
+	}
+
+	public void testSharedPerClient() {
+		assertSame(RefreshCoalescer.get(client), RefreshCoalescer.get(client));
+		assertNotSame(RefreshCoalescer.get(client), RefreshCoalescer.get(new RefreshClient(threadPool)));
+	}
+
+	public void testRequestsInWindowAreCoalesced() throws Exception {
+		// 两个 DAO 通过共享实例请求刷新同一索引
+		RefreshCoalescer.get(client).requestRefresh("a", 50);
+		RefreshCoalescer.get(client).requestRefresh("a", 50);
+		RefreshCoalescer.get(client).requestRefresh("b", 50);
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (client.refreshed.size() < 2 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		Thread.sleep(100);
+		List<String> refreshed = new ArrayList<String>(client.refreshed);
+		Collections.sort(refreshed);
+		assertEquals("[a, b]", refreshed.toString());
+		assertEquals(0, RefreshCoalescer.get(client).getPending());
+	}
+
+	public void testCloseRefreshesPendingIndices() throws Exception {
+		RefreshCoalescer coalescer = RefreshCoalescer.get(client);
+		coalescer.requestRefresh("a", 60 * 1000);
+		assertEquals(1, coalescer.getPending());
+
+		RefreshCoalescer.close(client);
+		assertEquals("[a]", client.refreshed.toString());
+		assertEquals(0, coalescer.getPending());
+		assertNotSame(coalescer, RefreshCoalescer.get(client));
+	}
+
+	/**
+	 * 记录刷新的索引，刷新以失败结束（RefreshResponse 无法在包外构造）
+	 */
+	private static class RefreshClient extends AbstractClient {
+		private final List<String> refreshed = Collections.synchronizedList(new ArrayList<String>());
+
+		RefreshClient(ThreadPool threadPool) {
+			super(Settings.EMPTY, threadPool, Headers.EMPTY);
+		}
+
+		@Override
+		protected <Request extends ActionRequest, Response extends ActionResponse, RequestBuilder extends ActionRequestBuilder<Request, Response, RequestBuilder>> void doExecute(
+				Action<Request, Response, RequestBuilder> action, Request request, ActionListener<Response> listener) {
+			refreshed.add(((RefreshRequest) request).indices()[0]);
+			listener.onFailure(new IllegalStateException("refresh not supported"));
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
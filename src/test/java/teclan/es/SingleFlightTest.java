@@ -0,0 +1,121 @@
+package teclan.es;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import junit.framework.TestCase;
+
+public class SingleFlightTest extends TestCase {
+	private static final int THREADS = 8;
+
+	public void testConcurrentCallsShareOneResult() throws Exception {
+		final SingleFlight<Object> flight = new SingleFlight<Object>();
+		final AtomicInteger calls = new AtomicInteger();
+		final Object value = new Object();
+		Callable<Object> loader = new Callable<Object>() {
+
+			@Override
+			public Object call() throws Exception {
+				calls.incrementAndGet();
+				Thread.sleep(200);
+				return value;
+			}
+		};
+
+		AtomicReferenceArray<Object> results = run(flight, loader);
+		assertEquals(1, calls.get());
+		for (int i = 0; i < THREADS; i++) {
+			assertSame(value, results.get(i));
+		}
+		assertEquals(0, flight.getInFlight());
+	}
+
+	public void testFailureReachesEveryCaller() throws Exception {
+		final SingleFlight<Object> flight = new SingleFlight<Object>();
+		final AtomicInteger calls = new AtomicInteger();
+		final IllegalStateException failure = new IllegalStateException("search failed");
+		Callable<Object> loader = new Callable<Object>() {
+
+			@Override
+			public Object call() throws Exception {
+				calls.incrementAndGet();
+				Thread.sleep(200);
+				throw failure;
+			}
+		};
+
+		AtomicReferenceArray<Object> results = run(flight, loader);
+		assertEquals(1, calls.get());
+		for (int i = 0; i < THREADS; i++) {
+			assertSame(failure, results.get(i));
+		}
+		assertEquals(0, flight.getInFlight());
+	}
+
+	public void testCheckedExceptionIsWrapped() {
+		SingleFlight<Object> flight = new SingleFlight<Object>();
+		try {
+			flight.execute("key", new Callable<Object>() {
+
+				@Override
+				public Object call() throws Exception {
+					throw new Exception("checked");
+				}
+			});
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals("checked", e.getCause().getMessage());
+		}
+	}
+
+	public void testLaterCallExecutesAgain() {
+		SingleFlight<Object> flight = new SingleFlight<Object>();
+		final AtomicInteger calls = new AtomicInteger();
+		Callable<Object> loader = new Callable<Object>() {
+
+			@Override
+			public Object call() {
+				return calls.incrementAndGet();
+			}
+		};
+		assertEquals(1, flight.execute("key", loader));
+		assertEquals(2, flight.execute("key", loader));
+		assertEquals(3, flight.execute("other", loader));
+	}
+
+	/**
+	 * 多个线程同时以相同的键调用，返回每个线程得到的结果或异常
+	 */
+	private static AtomicReferenceArray<Object> run(final SingleFlight<Object> flight, final Callable<Object> loader)
+			throws InterruptedException {
+		final AtomicReferenceArray<Object> results = new AtomicReferenceArray<Object>(THREADS);
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < THREADS; i++) {
+			final int index = i;
+			Thread thread = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						start.await();
+						results.set(index, flight.execute("key", loader));
+					} catch (Throwable e) {
+						results.set(index, e);
+					}
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		return results;
+	}
+}
@@ -0,0 +1,178 @@
+package teclan.es;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.action.Action;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionRequestBuilder;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.search.SearchAction;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.client.support.AbstractClient;
+import org.elasticsearch.client.support.Headers;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.internal.InternalSearchResponse;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import com.alibaba.fastjson.JSONArray;
+
+import junit.framework.TestCase;
+import teclan.es.metrics.MetricsListener;
+
+public class SlowQueryRecorderTest extends TestCase {
+	private ThreadPool threadPool;
+
+	@Override
+	protected void setUp() throws Exception {
+		threadPool = new ThreadPool("slow-query-test");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		ThreadPool.terminate(threadPool, 10, TimeUnit.SECONDS);
+	}
+
+	public void testCapacityMustBePositive() {
+		try {
+			new SlowQueryRecorder(0);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			new SlowQueryRecorder(-1);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	public void testRingBufferKeepsLatestEntries() throws Exception {
+		SearchClient client = new SearchClient(threadPool);
+		SlowQueryRecorder recorder = new SlowQueryRecorder(2);
+		for (int i = 0; i < 3; i++) {
+			SearchRequestBuilder builder = newSearch(client).setFrom(i * 10).setSize(10);
+			recorder.record(MetricsListener.SEARCH, "test", builder, builder.execute().actionGet(), 1000000);
+		}
+
+		JSONArray entries = recorder.getEntries();
+		assertEquals(2, entries.size());
+		assertEquals(10, entries.getJSONObject(0).getIntValue("from"));
+		assertEquals(20, entries.getJSONObject(1).getIntValue("from"));
+		assertEquals(10, entries.getJSONObject(1).getIntValue("size"));
+	}
+
+	public void testSlowQueryRecordingIsOffByDefault() {
+		Dao dao = new Dao(0);
+		assertTrue(dao.getSlowQueryThresholdMillis() <= 0);
+
+		SearchClient client = new SearchClient(threadPool);
+		dao.execute(MetricsListener.SEARCH, "test", newSearch(client));
+		assertEquals(0, dao.getSlowQueryRecorder().getEntries().size());
+	}
+
+	public void testProfileIsOnlyEnabledForOneRequest() {
+		Dao dao = new Dao(1);
+		SearchClient client = new SearchClient(threadPool);
+		SearchRequestBuilder builder = newSearch(client);
+
+		dao.execute(MetricsListener.SEARCH, "test", builder);
+		assertFalse(builder.internalBuilder().profile());
+		// 复用同一个 builder 直接执行时不再开启 profile
+		builder.execute().actionGet();
+
+		assertEquals(2, client.profiled.size());
+		assertTrue(client.profiled.get(0));
+		assertFalse(client.profiled.get(1));
+		assertEquals(1, dao.getSlowQueryRecorder().getEntries().size());
+	}
+
+	public void testProfileSetByCallerIsKept() {
+		Dao dao = new Dao(1);
+		SearchClient client = new SearchClient(threadPool);
+		SearchRequestBuilder builder = newSearch(client).setProfile(true);
+
+		dao.execute(MetricsListener.SEARCH, "test", builder);
+		assertTrue(builder.internalBuilder().profile());
+	}
+
+	private static SearchRequestBuilder newSearch(SearchClient client) {
+		return new SearchRequestBuilder(client, SearchAction.INSTANCE).setIndices("test")
+				.setQuery(QueryBuilders.matchAllQuery());
+	}
+
+	/**
+	 * 每次查询耗时至少 2 毫秒，记录请求是否开启了 profile
+	 */
+	private static class SearchClient extends AbstractClient {
+		private final List<Boolean> profiled = new ArrayList<Boolean>();
+
+		SearchClient(ThreadPool threadPool) {
+			super(Settings.EMPTY, threadPool, Headers.EMPTY);
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		protected synchronized <Request extends ActionRequest, Response extends ActionResponse, RequestBuilder extends ActionRequestBuilder<Request, Response, RequestBuilder>> void doExecute(
+				Action<Request, Response, RequestBuilder> action, Request request, ActionListener<Response> listener) {
+			profiled.add(Boolean.TRUE.equals(
+					XContentHelper.convertToMap(((SearchRequest) request).source(), false).v2().get("profile")));
+			try {
+				Thread.sleep(2);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			listener.onResponse((Response) new SearchResponse(InternalSearchResponse.empty(), null, 1, 1, 1,
+					new ShardSearchFailure[0]));
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	private static class Dao extends AbstractESDaoImpl {
+		private final long threshold;
+
+		Dao(long threshold) {
+			this.threshold = threshold;
+		}
+
+		@Override
+		public TransportClient getTransportClient() {
+			return null;
+		}
+
+		@Override
+		public String getIndex() {
+			return "test";
+		}
+
+		@Override
+		public String getType() {
+			return "doc";
+		}
+
+		@Override
+		public long getSlowQueryThresholdMillis() {
+			return threshold == 0 ? super.getSlowQueryThresholdMillis() : threshold;
+		}
+
+		@Override
+		public double getSlowQueryProfileRate() {
+			return 1;
+		}
+
+		@Override
+		public MetricsListener getMetricsListener() {
+			return MetricsListener.NONE;
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package teclan.es;
+
+import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.common.settings.Settings;
+
+import junit.framework.TestCase;
+
+public class TransportClientFactoryTest extends TestCase {
+
+	public void testReconnectKeepsConfiguredAddresses() {
+		// 本机 1 号端口没有 ES 节点，连接立即失败
+		TransportClient client = TransportClientFactory.get("health-check", new String[] { "127.0.0.1" },
+				new int[] { 1 }, Settings.settingsBuilder().put("client.transport.nodes_sampler_interval", "1h").build());
+		try {
+			assertTrue(client.connectedNodes().isEmpty());
+			assertEquals(1, client.transportAddresses().size());
+
+			TransportClientFactory.checkHealth(client);
+			assertTrue(client.connectedNodes().isEmpty());
+			assertEquals(1, client.transportAddresses().size());
+			assertEquals(1, client.transportAddresses().get(0).getPort());
+		} finally {
+			TransportClientFactory.close(client);
+		}
+		assertFalse(TransportClientFactory.CLIENTS.containsValue(client));
+	}
+}
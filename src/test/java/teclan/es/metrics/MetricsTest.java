@@ -0,0 +1,61 @@
+package teclan.es.metrics;
+
+import java.util.Collections;
+
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.index.get.GetField;
+import org.elasticsearch.index.get.GetResult;
+import org.elasticsearch.search.SearchHitField;
+import org.elasticsearch.search.internal.InternalSearchHit;
+import org.elasticsearch.search.internal.InternalSearchHits;
+import org.elasticsearch.search.internal.InternalSearchResponse;
+
+import junit.framework.TestCase;
+
+public class MetricsTest extends TestCase {
+
+	public void testSearchResponseBytes() {
+		InternalSearchHit first = new InternalSearchHit(0, "1", new Text("doc"),
+				Collections.<String, SearchHitField> emptyMap());
+		first.sourceRef(new BytesArray("{\"a\":1}"));
+		InternalSearchHit second = new InternalSearchHit(1, "2", new Text("doc"),
+				Collections.<String, SearchHitField> emptyMap());
+		second.sourceRef(new BytesArray("{\"a\":10}"));
+		InternalSearchHits hits = new InternalSearchHits(new InternalSearchHit[] { first, second }, 2, 1);
+		SearchResponse response = new SearchResponse(new InternalSearchResponse(hits, null, null, null, false, null),
+				null, 1, 1, 1, new ShardSearchFailure[0]);
+
+		assertEquals(15, Metrics.getBytes(response));
+		assertEquals(15, Metrics.getBytes(new IndexRequest("test"), response));
+	}
+
+	public void testGetResponseBytes() {
+		GetResponse found = get("1", "{\"a\":1}");
+		GetResponse missing = new GetResponse(
+				new GetResult("test", "doc", "2", -1, false, null, Collections.<String, GetField> emptyMap()));
+		assertEquals(7, Metrics.getBytes(found));
+		assertEquals(0, Metrics.getBytes(missing));
+
+		MultiGetResponse multi = new MultiGetResponse(new MultiGetItemResponse[] {
+				new MultiGetItemResponse(found, null), new MultiGetItemResponse(get("3", "{}"), null),
+				new MultiGetItemResponse(null, new MultiGetResponse.Failure("test", "doc", "4", new Exception())) });
+		assertEquals(9, Metrics.getBytes(multi));
+	}
+
+	public void testWriteRequestBytes() {
+		IndexRequest request = new IndexRequest("test", "doc", "1").source("{\"a\":1}");
+		assertEquals(7, Metrics.getBytes(request, null));
+	}
+
+	private static GetResponse get(String id, String source) {
+		return new GetResponse(new GetResult("test", "doc", id, 1, true, new BytesArray(source),
+				Collections.<String, GetField> emptyMap()));
+	}
+}
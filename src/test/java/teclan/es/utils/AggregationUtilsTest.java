@@ -0,0 +1,160 @@
+package teclan.es.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.search.aggregations.Aggregation;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.aggregations.bucket.SingleBucketAggregation;
+import org.elasticsearch.search.aggregations.bucket.range.InternalRange;
+import org.elasticsearch.search.aggregations.bucket.terms.StringTerms;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.metrics.max.InternalMax;
+import org.elasticsearch.search.aggregations.metrics.percentiles.tdigest.InternalTDigestPercentiles;
+import org.elasticsearch.search.aggregations.metrics.percentiles.tdigest.TDigestState;
+import org.elasticsearch.search.aggregations.metrics.stats.InternalStats;
+import org.elasticsearch.search.aggregations.metrics.valuecount.InternalValueCount;
+import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
+import org.elasticsearch.search.aggregations.support.format.ValueFormatter;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+
+import junit.framework.TestCase;
+
+public class AggregationUtilsTest extends TestCase {
+	private static final List<PipelineAggregator> NO_PIPELINES = Collections.emptyList();
+
+	public void testNullAggregations() {
+		assertTrue(AggregationUtils.toJson((Aggregations) null).isEmpty());
+	}
+
+	public void testTermsWithSubAggregation() {
+		List<StringTerms.Bucket> buckets = new ArrayList<StringTerms.Bucket>();
+		buckets.add(new StringTerms.Bucket(new BytesRef("a"), 3, aggregations(max("max", 9)), false, 0));
+		buckets.add(new StringTerms.Bucket(new BytesRef("b"), 2, aggregations(max("max", 4)), false, 0));
+		StringTerms terms = new StringTerms("tags", Terms.Order.count(false), 10, 10, 1, buckets, false, 0, 5,
+				NO_PIPELINES, null);
+
+		JSONObject json = AggregationUtils.toJson(aggregations(terms)).getJSONObject("tags");
+		assertEquals(5, json.getLongValue("other"));
+		JSONArray array = json.getJSONArray("buckets");
+		assertEquals(2, array.size());
+		assertEquals("a", array.getJSONObject(0).getString("key"));
+		assertEquals(3, array.getJSONObject(0).getLongValue("count"));
+		assertEquals(9.0, array.getJSONObject(0).getJSONObject("max").getDoubleValue("value"));
+		assertEquals("b", array.getJSONObject(1).getString("key"));
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public void testRangeBoundsAreNullWhenUnbounded() {
+		List<InternalRange.Bucket> buckets = new ArrayList<InternalRange.Bucket>();
+		buckets.add(new InternalRange.Bucket("*-10.0", Double.NEGATIVE_INFINITY, 10, 2, aggregations(), false,
+				ValueFormatter.RAW));
+		buckets.add(new InternalRange.Bucket("10.0-*", 10, Double.POSITIVE_INFINITY, 1, aggregations(), false,
+				ValueFormatter.RAW));
+		InternalRange range = new InternalRange("price", buckets, ValueFormatter.RAW, false, NO_PIPELINES, null);
+
+		JSONArray array = ((JSONObject) AggregationUtils.toJson(range)).getJSONArray("buckets");
+		JSONObject first = array.getJSONObject(0);
+		assertEquals("*-10.0", first.getString("key"));
+		assertNull(first.get("from"));
+		assertEquals(10.0, first.getDoubleValue("to"));
+		assertEquals(2, first.getLongValue("count"));
+		assertEquals(10.0, array.getJSONObject(1).getDoubleValue("from"));
+		assertNull(array.getJSONObject(1).get("to"));
+		assertFalse(array.getJSONObject(0).containsKey("other"));
+	}
+
+	public void testSingleBucket() {
+		Aggregation filter = new Filter("recent", 7,
+				aggregations(new InternalValueCount("users", 6, ValueFormatter.RAW, NO_PIPELINES, null)));
+
+		JSONObject json = (JSONObject) AggregationUtils.toJson(filter);
+		assertEquals(7, json.getLongValue("count"));
+		assertEquals(6, json.getJSONObject("users").getLongValue("value"));
+	}
+
+	public void testSingleValueWithoutDocumentsIsNull() {
+		JSONObject json = (JSONObject) AggregationUtils.toJson(max("max", Double.NEGATIVE_INFINITY));
+		assertTrue(json.containsKey("value"));
+		assertNull(json.get("value"));
+	}
+
+	public void testStats() {
+		JSONObject json = (JSONObject) AggregationUtils
+				.toJson(new InternalStats("stats", 4, 10, 1, 4, ValueFormatter.RAW, NO_PIPELINES, null));
+		assertEquals(4, json.getLongValue("count"));
+		assertEquals(1.0, json.getDoubleValue("min"));
+		assertEquals(4.0, json.getDoubleValue("max"));
+		assertEquals(2.5, json.getDoubleValue("avg"));
+		assertEquals(10.0, json.getDoubleValue("sum"));
+
+		JSONObject empty = (JSONObject) AggregationUtils.toJson(new InternalStats("stats", 0, 0,
+				Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, ValueFormatter.RAW, NO_PIPELINES, null));
+		assertEquals(0, empty.getLongValue("count"));
+		assertNull(empty.get("min"));
+		assertNull(empty.get("max"));
+		assertNull(empty.get("avg"));
+	}
+
+	public void testOtherTypesUseRawJson() {
+		TDigestState state = new TDigestState(100);
+		state.add(1);
+		state.add(3);
+		Object json = AggregationUtils.toJson(new InternalTDigestPercentiles("percentiles", new double[] { 50 }, state,
+				true, ValueFormatter.RAW, NO_PIPELINES, null));
+		assertTrue(((JSONObject) json).containsKey("values"));
+	}
+
+	private static InternalMax max(String name, double value) {
+		return new InternalMax(name, value, ValueFormatter.RAW, NO_PIPELINES, null);
+	}
+
+	private static InternalAggregations aggregations(InternalAggregation... aggregations) {
+		return new InternalAggregations(Arrays.asList(aggregations));
+	}
+
+	private static class Filter implements SingleBucketAggregation {
+		private final String name;
+		private final long docCount;
+		private final Aggregations aggregations;
+
+		Filter(String name, long docCount, Aggregations aggregations) {
+			this.name = name;
+			this.docCount = docCount;
+			this.aggregations = aggregations;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public Object getProperty(String path) {
+			return null;
+		}
+
+		@Override
+		public Map<String, Object> getMetaData() {
+			return null;
+		}
+
+		@Override
+		public long getDocCount() {
+			return docCount;
+		}
+
+		@Override
+		public Aggregations getAggregations() {
+			return aggregations;
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package teclan.es.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class FileAppenderTest extends TestCase {
+	private File dir;
+	private File file;
+
+	@Override
+	protected void setUp() throws Exception {
+		dir = Files.createTempDirectory("file-appender").toFile();
+		file = new File(dir, "sub/append.log");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		FileUtils.deleteFiles(dir.getAbsolutePath());
+	}
+
+	public void testBufferedUntilFlush() throws Exception {
+		FileAppender appender = new FileAppender(file.getAbsolutePath(), 1024, 0, false);
+		try {
+			appender.append("第一行\n");
+			assertEquals("", read());
+			appender.flush();
+			assertEquals("第一行\n", read());
+		} finally {
+			appender.close();
+		}
+	}
+
+	public void testAppendsToExistingFile() throws Exception {
+		FileUtils.write2File(file.getAbsolutePath(), "existing\n");
+		FileAppender appender = new FileAppender(file.getAbsolutePath(), 1024, 0, true);
+		appender.append("appended\n");
+		appender.close();
+		assertEquals("existing\nappended\n", read());
+	}
+
+	public void testContentLargerThanBuffer() throws Exception {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			text.append("中文").append(i).append('\n');
+		}
+		byte[] bytes = new byte[100];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = 'x';
+		}
+
+		FileAppender appender = new FileAppender(file.getAbsolutePath(), 16, 0, false);
+		appender.append(text);
+		appender.append(bytes);
+		appender.append("end".getBytes(StandardCharsets.UTF_8));
+		appender.close();
+		assertEquals(text + new String(bytes, StandardCharsets.UTF_8) + "end", read());
+	}
+
+	public void testTimedFlush() throws Exception {
+		FileAppender appender = new FileAppender(file.getAbsolutePath(), 1024, 10, false);
+		try {
+			appender.append("timed");
+			long deadline = System.currentTimeMillis() + 5000;
+			while (read().isEmpty() && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertEquals("timed", read());
+		} finally {
+			appender.close();
+		}
+	}
+
+	public void testConcurrentAppendsKeepLinesIntact() throws Exception {
+		final FileAppender appender = new FileAppender(file.getAbsolutePath(), 256, 0, false);
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < 8; t++) {
+			final int thread = t;
+			Thread worker = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					for (int i = 0; i < 500; i++) {
+						try {
+							appender.append("线程" + thread + "-" + i + "\n");
+						} catch (IOException e) {
+							throw new IllegalStateException(e);
+						}
+					}
+				}
+			});
+			worker.start();
+			threads.add(worker);
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		appender.close();
+
+		List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+		List<String> expected = new ArrayList<String>();
+		for (int t = 0; t < 8; t++) {
+			for (int i = 0; i < 500; i++) {
+				expected.add("线程" + t + "-" + i);
+			}
+		}
+		Collections.sort(lines);
+		Collections.sort(expected);
+		assertEquals(expected, lines);
+	}
+
+	public void testAppendAfterCloseFails() throws Exception {
+		FileAppender appender = new FileAppender(file.getAbsolutePath(), 1024, 0, false);
+		appender.close();
+		appender.close();
+		appender.flush();
+		try {
+			appender.append("late");
+			fail();
+		} catch (IOException e) {
+		}
+	}
+
+	private String read() throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+}
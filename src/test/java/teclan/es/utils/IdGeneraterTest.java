@@ -0,0 +1,139 @@
+package teclan.es.utils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+public class IdGeneraterTest extends TestCase {
+	private static final long MAX_SEQUENCE = 4095;
+
+	public void testNewMillisecondStartsAtZero() {
+		long current = (100L << 12) | 7;
+		assertEquals(101L << 12, IdGenerater.nextState(current, 101));
+	}
+
+	public void testSameMillisecondIncrementsSequence() {
+		long current = (100L << 12) | 7;
+		assertEquals(current + 1, IdGenerater.nextState(current, 100));
+	}
+
+	public void testSequenceExhaustedWaitsForNextMillisecond() {
+		long current = (100L << 12) | MAX_SEQUENCE;
+		assertEquals(-1, IdGenerater.nextState(current, 100));
+	}
+
+	public void testClockRegressionReusesLastTimestamp() {
+		long current = (100L << 12) | 7;
+		assertEquals(current + 1, IdGenerater.nextState(current, 90));
+	}
+
+	public void testClockRegressionWithSequenceExhaustedBorrowsNextMillisecond() {
+		long current = (100L << 12) | MAX_SEQUENCE;
+		assertEquals(101L << 12, IdGenerater.nextState(current, 90));
+	}
+
+	public void testNextIdsAcrossMilliseconds() {
+		// 超过一毫秒的序号数，需要跨越多个毫秒
+		long[] ids = new long[10000];
+		IdGenerater.nextIds(ids, 0, ids.length);
+		for (int i = 1; i < ids.length; i++) {
+			assertTrue(ids[i] > ids[i - 1]);
+		}
+		assertTrue((ids[ids.length - 1] >>> 22) > (ids[0] >>> 22));
+	}
+
+	public void testUniqueAcrossThreads() throws Exception {
+		final int threads = 8;
+		final int perThread = 20000;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<long[]>> futures = new ArrayList<Future<long[]>>();
+			for (int t = 0; t < threads; t++) {
+				final boolean batch = t % 2 == 0;
+				futures.add(executor.submit(new Callable<long[]>() {
+
+					@Override
+					public long[] call() {
+						long[] ids = new long[perThread];
+						if (batch) {
+							for (int i = 0; i < perThread; i += 100) {
+								IdGenerater.nextIds(ids, i, 100);
+							}
+						} else {
+							for (int i = 0; i < perThread; i++) {
+								ids[i] = IdGenerater.nextId();
+							}
+						}
+						return ids;
+					}
+				}));
+			}
+
+			Set<Long> all = new HashSet<Long>();
+			for (Future<long[]> future : futures) {
+				long[] ids = future.get();
+				for (int i = 0; i < ids.length; i++) {
+					if (i > 0) {
+						assertTrue("每个线程内递增", ids[i] > ids[i - 1]);
+					}
+					assertTrue("重复的 ID：" + ids[i], all.add(ids[i]));
+				}
+			}
+			assertEquals(threads * perThread, all.size());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@SuppressWarnings("deprecation")
+	public void testSnowflakeSharesState() {
+		long before = IdGenerater.nextId();
+		long id = new IdGenerater().getSnowflake().next();
+		long after = IdGenerater.nextId();
+		assertTrue(before < id && id < after);
+	}
+
+	public void testNodeInId() {
+		IdGenerater.init(5);
+		try {
+			assertEquals(5, (IdGenerater.nextId() >>> 12) & 1023);
+		} finally {
+			IdGenerater.init(1);
+		}
+	}
+
+	public void testInvalidNode() {
+		try {
+			IdGenerater.init(1024);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	public void testBase62() {
+		long small = IdGenerater.nextId();
+		long large = IdGenerater.nextId();
+		String a = IdGenerater.toBase62(small);
+		String b = IdGenerater.toBase62(large);
+		assertEquals(11, a.length());
+		assertEquals(small, IdGenerater.fromBase62(a));
+		assertEquals(large, IdGenerater.fromBase62(b));
+		assertTrue(a.compareTo(b) < 0);
+		assertEquals("00000000000", IdGenerater.toBase62(0));
+	}
+
+	public void testWriteDecimal() {
+		char[] buffer = new char[20];
+		int length = IdGenerater.writeDecimal(1234567890123L, buffer, 1);
+		assertEquals("1234567890123", new String(buffer, 1, length));
+		assertEquals(1, IdGenerater.writeDecimal(0, buffer, 0));
+		assertEquals('0', buffer[0]);
+	}
+}
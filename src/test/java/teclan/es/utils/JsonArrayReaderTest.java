@@ -0,0 +1,125 @@
+package teclan.es.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONException;
+import com.alibaba.fastjson.JSONObject;
+
+import junit.framework.TestCase;
+
+public class JsonArrayReaderTest extends TestCase {
+	private File file;
+
+	@Override
+	protected void setUp() throws Exception {
+		file = File.createTempFile("json-array-reader", ".json");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		file.delete();
+	}
+
+	public void testReadsEveryObject() throws Exception {
+		write("\uFEFF [ {\"id\":\"1\",\"tags\":[\"a\",\"b\"]} ,\n {\"id\":\"2\",\"nested\":{\"x\":[1,{\"y\":2}]}} ]\n");
+		List<JSONObject> documents = readAll();
+		assertEquals(2, documents.size());
+		assertEquals("1", documents.get(0).getString("id"));
+		assertEquals("b", documents.get(0).getJSONArray("tags").getString(1));
+		assertEquals(2, documents.get(1).getJSONObject("nested").getJSONArray("x").getJSONObject(1).getIntValue("y"));
+	}
+
+	public void testStringsKeepSpecialCharacters() throws Exception {
+		write("[{\"text\":\"a, b ] } { [ \\\"quoted\\\" \\\\\",\"spaces\":\"  x  \"}]");
+		List<JSONObject> documents = readAll();
+		assertEquals(1, documents.size());
+		assertEquals("a, b ] } { [ \"quoted\" \\", documents.get(0).getString("text"));
+		assertEquals("  x  ", documents.get(0).getString("spaces"));
+	}
+
+	public void testEmptyArray() throws Exception {
+		write("  [ ]  ");
+		JsonArrayReader reader = new JsonArrayReader(file);
+		try {
+			assertFalse(reader.hasNext());
+			try {
+				reader.next();
+				fail();
+			} catch (NoSuchElementException e) {
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * 多字节字符跨越读取块的边界
+	 */
+	public void testLargeFileWithMultiByteCharacters() throws Exception {
+		JSONArray array = new JSONArray();
+		for (int i = 0; i < 5000; i++) {
+			JSONObject document = new JSONObject();
+			document.put("id", i);
+			document.put("name", "文档" + i + "中文内容");
+			array.add(document);
+		}
+		write(array.toJSONString());
+		assertTrue(file.length() > 64 * 1024);
+
+		List<JSONObject> documents = readAll();
+		assertEquals(5000, documents.size());
+		for (int i = 0; i < 5000; i++) {
+			assertEquals(i, documents.get(i).getIntValue("id"));
+			assertEquals("文档" + i + "中文内容", documents.get(i).getString("name"));
+		}
+	}
+
+	public void testNotAnArray() throws Exception {
+		write("{\"id\":1}");
+		JsonArrayReader reader = new JsonArrayReader(file);
+		try {
+			reader.hasNext();
+			fail();
+		} catch (JSONException e) {
+		} finally {
+			reader.close();
+		}
+	}
+
+	public void testTruncatedArray() throws Exception {
+		write("[{\"id\":1},{\"id\":2}");
+		JsonArrayReader reader = new JsonArrayReader(file);
+		try {
+			assertEquals(1, reader.next().getIntValue("id"));
+			reader.hasNext();
+			fail();
+		} catch (JSONException e) {
+		} finally {
+			reader.close();
+		}
+	}
+
+	private void write(String content) throws IOException {
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private List<JSONObject> readAll() throws IOException {
+		List<JSONObject> documents = new ArrayList<JSONObject>();
+		JsonArrayReader reader = new JsonArrayReader(file);
+		try {
+			while (reader.hasNext()) {
+				documents.add(reader.next());
+			}
+		} finally {
+			reader.close();
+		}
+		return documents;
+	}
+}
@@ -0,0 +1,96 @@
+package teclan.es.utils;
+
+import junit.framework.TestCase;
+
+public class LocalCacheTest extends TestCase {
+
+	public void testGetAndPut() {
+		LocalCache<String> cache = new LocalCache<String>(10, 1024, 60 * 1000);
+		assertNull(cache.get("a"));
+		cache.put("a", "1", cache.stamp());
+		assertEquals("1", cache.get("a"));
+		assertEquals(1, cache.getStats().getLongValue("hits"));
+		assertEquals(1, cache.getStats().getLongValue("misses"));
+	}
+
+	public void testEvictsLeastRecentlyUsedByEntries() {
+		LocalCache<String> cache = new LocalCache<String>(2, 1024, 60 * 1000);
+		cache.put("a", "1", cache.stamp());
+		cache.put("b", "2", cache.stamp());
+		cache.get("a");
+		cache.put("c", "3", cache.stamp());
+
+		assertEquals("1", cache.get("a"));
+		assertNull(cache.get("b"));
+		assertEquals("3", cache.get("c"));
+		assertEquals(1, cache.getStats().getLongValue("evictions"));
+		assertEquals(2, cache.getStats().getIntValue("size"));
+	}
+
+	public void testEvictsByBytes() {
+		// 每个字符按 2 字节计算
+		LocalCache<String> cache = new LocalCache<String>(100, 20, 60 * 1000);
+		cache.put("a", "12345", cache.stamp());
+		cache.put("b", "12345", cache.stamp());
+		assertEquals(20, cache.getStats().getLongValue("bytes"));
+		cache.put("c", "1", cache.stamp());
+
+		assertNull(cache.get("a"));
+		assertEquals("12345", cache.get("b"));
+		assertEquals(12, cache.getStats().getLongValue("bytes"));
+	}
+
+	public void testValueLargerThanCacheIsNotStored() {
+		LocalCache<String> cache = new LocalCache<String>(100, 4, 60 * 1000);
+		cache.put("a", "12345", cache.stamp());
+		assertNull(cache.get("a"));
+		assertEquals(0, cache.getStats().getLongValue("bytes"));
+	}
+
+	public void testReplacingEntryKeepsBytesAccurate() {
+		LocalCache<String> cache = new LocalCache<String>(100, 1024, 60 * 1000);
+		cache.put("a", "12345", cache.stamp());
+		cache.put("a", "1", cache.stamp());
+		assertEquals(2, cache.getStats().getLongValue("bytes"));
+		assertEquals(1, cache.getStats().getIntValue("size"));
+	}
+
+	public void testExpiredEntryIsNotReturned() throws Exception {
+		LocalCache<String> cache = new LocalCache<String>(10, 1024, 20);
+		cache.put("a", "1", cache.stamp());
+		Thread.sleep(50);
+		assertNull(cache.get("a"));
+		assertEquals(1, cache.getStats().getLongValue("expirations"));
+		assertEquals(0, cache.getStats().getIntValue("size"));
+	}
+
+	public void testPutAfterInvalidationIsDropped() {
+		LocalCache<String> cache = new LocalCache<String>(10, 1024, 60 * 1000);
+		long stamp = cache.stamp();
+		// 读穿透期间发生了写入
+		cache.invalidate("a");
+		cache.put("a", "old", stamp);
+		assertNull(cache.get("a"));
+
+		stamp = cache.stamp();
+		cache.invalidateAll();
+		cache.put("b", "old", stamp);
+		assertNull(cache.get("b"));
+
+		cache.put("a", "new", cache.stamp());
+		assertEquals("new", cache.get("a"));
+	}
+
+	public void testInvalidate() {
+		LocalCache<String> cache = new LocalCache<String>(10, 1024, 60 * 1000);
+		cache.put("a", "1", cache.stamp());
+		cache.put("b", "2", cache.stamp());
+		cache.invalidate("a");
+		assertNull(cache.get("a"));
+		assertEquals("2", cache.get("b"));
+
+		cache.invalidateAll();
+		assertNull(cache.get("b"));
+		assertEquals(0, cache.getStats().getLongValue("bytes"));
+	}
+}
@@ -0,0 +1,50 @@
+package teclan.es.utils;
+
+import com.alibaba.fastjson.JSONObject;
+
+import junit.framework.TestCase;
+
+public class PageInfoUtilsTest extends TestCase {
+
+	public void testGetOffset() {
+		assertEquals(0, PageInfoUtils.getOffset(1, 25));
+		assertEquals(50, PageInfoUtils.getOffset(3, 25));
+		assertEquals(0, PageInfoUtils.getOffset(0, 25));
+		assertEquals(0, PageInfoUtils.getOffset(-2, 25));
+	}
+
+	public void testGetOffsetWithTotalPages() {
+		assertEquals(25, PageInfoUtils.getOffset(2, 25, 4));
+		assertEquals(75, PageInfoUtils.getOffset(9, 25, 4));
+		assertEquals(0, PageInfoUtils.getOffset(3, 25, 0));
+	}
+
+	public void testGetTotalPages() {
+		assertEquals(0, PageInfoUtils.getTotalPages(0, 25));
+		assertEquals(1, PageInfoUtils.getTotalPages(25, 25));
+		assertEquals(2, PageInfoUtils.getTotalPages(26, 25));
+	}
+
+	public void testPageInfoMatchesReturnedPage() {
+		JSONObject pageInfo = PageInfoUtils.getPageInfo(60, 2, 25);
+		assertEquals(60, pageInfo.getLongValue("total"));
+		assertEquals(3, pageInfo.getIntValue("totalPages"));
+		assertEquals(2, pageInfo.getIntValue("currentPage"));
+		assertEquals(25, pageInfo.getIntValue("pageSize"));
+	}
+
+	public void testPageInfoPastLastPageKeepsRequestedPage() {
+		assertEquals(9, PageInfoUtils.getPageInfo(60, 9, 25).getIntValue("currentPage"));
+		assertEquals(1, PageInfoUtils.getPageInfo(0, 1, 25).getIntValue("currentPage"));
+	}
+
+	public void testPageInfoBeforeFirstPageIsFirstPage() {
+		assertEquals(1, PageInfoUtils.getPageInfo(60, 0, 25).getIntValue("currentPage"));
+		assertEquals(1, PageInfoUtils.getPageInfo(60, -3, 25).getIntValue("currentPage"));
+		assertEquals(PageInfoUtils.getOffset(1, 25), PageInfoUtils.getOffset(-3, 25));
+	}
+
+	public void testClampedPageInfo() {
+		assertEquals(3, PageInfoUtils.getPageInfo(60, 3, 9, 25).getIntValue("currentPage"));
+	}
+}